@@ -12,10 +12,81 @@ public class constant {
 //    上传大小限制
     public static final long MaxFileSize = 536870912L; // 512 * 1024*1024，等于 512MB
 
+//    流式上传时读写文件使用的缓冲区大小
+    public static final int TransferBufferSize = 1048576; // 1024*1024，等于 1MB
+
+//    上传的文件是否默认按内容寻址存储（相同内容只保存一份），每次上传可以用 dedup 参数覆盖
+    public static final boolean ContentAddressedStorage = false;
+
+//    分片上传的默认分片大小
+    public static final int ChunkSize = 8388608; // 8 * 1024*1024，等于 8MB
+
+//    分片上传会话在没有任何分片到达后保留的时间（毫秒）
+    public static final long ChunkSessionTimeout = 86400000L; // 24小时
+
+//    清理过期分片上传会话的间隔（毫秒）
+    public static final long ChunkSessionSweepInterval = 3600000L; // 1小时
+
 //    图片的路径
 //    public static final String ImageUrl = "C:\\Users\\SmdxLa\\Desktop\\test\\images";
     public static final String ImageUrl = "/data/images";
 
+//    缩略图缓存的路径
+    public static final String ThumbnailUrl = "/data/images-cache";
+
+//    缩略图缓存占用的最大磁盘空间
+    public static final long ThumbnailCacheSize = 1073741824L; // 1024 * 1024*1024，等于 1GB
+
+//    被淘汰的缩略图延迟删除的时间（毫秒），已经拿到路径的请求在这段时间内仍能读取文件
+    public static final long ThumbnailEvictionDelay = 60000L; // 1分钟
+
+//    缩略图允许的最大边长
+    public static final int MaxThumbnailSize = 2048;
+
+//    同时处理的图片任务（像素画、格式转换等）数量上限，超出的请求排队等待
+    public static final int MaxImageJobs = 4;
+
+//    图片任务排队等待的最长时间（毫秒），超时后返回503
+    public static final long ImageJobTimeout = 30000L; // 30秒
+
+//    格式转换时解码后的最大像素数，需要缩小时会先加大抽样间隔，仍然超过则拒绝（413）
+    public static final int MaxConvertPixels = 33554432; // 32 * 1024*1024，ARGB格式约128MB
+
+//    二维码图片缓存占用的最大内存
+    public static final long QrCacheSize = 67108864L; // 64 * 1024*1024，等于 64MB
+
+//    一次识别二维码请求最多上传的图片数量
+    public static final int MaxQrDecodeFiles = 32;
+
+//    ip2region 数据库文件的路径，文件不存在时使用程序自带的数据库
+    public static final String IpRegionDbPath = "/data/ip2region/ip2region.xdb";
+
+//    检查 ip2region 数据库文件是否更新的间隔（毫秒），文件更新后自动重新加载，0 表示不检查
+    public static final long IpRegionReloadInterval = 60000L; // 1分钟
+
+//    ip2region 数据库的加载方式：buffer 整个数据库读入内存；vector 只把向量索引读入内存，数据从文件读取
+    public static final String IpRegionMode = "buffer";
+
+//    IP地理位置查询结果缓存的条目数
+    public static final int IpRegionCacheSize = 65536;
+
+//    可信代理的地址段（CIDR），来自这些地址的请求才读取 X-Forwarded-For / Forwarded 中的客户端地址
+    public static final String[] TrustedProxies = {
+            "127.0.0.0/8", "::1/128", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16"
+    };
+
+//    密码的最大长度
+    public static final int MaxPasswordLength = 1024;
+
+//    批量生成密码时一次请求的最大数量
+    public static final long MaxBulkPasswords = 10000000L; // 一千万
+
+//    常见密码列表的路径，每行一个，按常见程度排序；文件存在时与程序自带的列表合并
+    public static final String PasswordDictionaryPath = "/data/passwords/common.txt";
+
+//    生成密码短语的单词表路径，每行一个单词，文件不存在时使用程序自带的单词表
+    public static final String PassphraseWordListPath = "/data/passwords/words.txt";
+
 //    API
     public static final String SauceNAO_API = "4e10fd31bf66f2994ef3c9c66d27b7378c1f83e5";
 
@@ -1,30 +1,55 @@
 package stu.team.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.xml.bind.DatatypeConverter;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import stu.team.constant.constant;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import stu.team.util.ChunkedUpload;
+import stu.team.util.ClientIpResolver;
+import stu.team.util.ContentStore;
+import stu.team.util.DigestIndex;
+import stu.team.util.FileDiff;
+import stu.team.util.FileMeta;
+import stu.team.util.FileMetaCache;
+import stu.team.util.FileServer;
+import stu.team.util.FileTransfer;
+import stu.team.util.ImageConverter;
+import stu.team.util.ImageJobs;
+import stu.team.util.IpEnricher;
 import stu.team.util.IpRegionUtil;
+import stu.team.util.PasswordStrength;
+import stu.team.util.Passwords;
+import stu.team.util.PixelArt;
+import stu.team.util.QrBatch;
+import stu.team.util.QrCodes;
+import stu.team.util.QrDecoder;
 import stu.team.util.Generator;
+import stu.team.util.StreamHasher;
 import stu.team.util.TextComparator;
-import stu.team.util.Converter;
+import stu.team.util.Thumbnails;
+import stu.team.util.UnitBatch;
+import stu.team.util.UnitExpression;
+import stu.team.util.Units;
+import stu.team.util.Workers;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.zxing.NotFoundException;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import javax.imageio.stream.ImageInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
@@ -33,11 +58,19 @@ import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
-import static stu.team.util.Generator.generatePixelArt;
 
 /**
  * @author crc
@@ -46,14 +79,21 @@ import static stu.team.util.Generator.generatePixelArt;
 @RestController
 public class ToolsController {
 
+    // 超过该大小的文件默认并行计算哈希
+    private static final long PARALLEL_HASH_THRESHOLD = 8 * 1024 * 1024;
+
 
     /**
      * 上传文件到服务器。
      * @param file 要上传的文件
+     * @param dedup 是否按内容寻址存储，默认取 constant.ContentAddressedStorage
+     * @param overwrite 按内容寻址存储时，文件名已指向其它内容是否覆盖
      * @return 上传结果
      */
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file,
+                                             @RequestParam(value = "dedup", required = false) Boolean dedup,
+                                             @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
         // 尝试执行文件上传的操作
         try {
             // 检查上传的文件大小是否超过预设的最大值constant.MaxFileSize 表示最大文件大小
@@ -65,16 +105,33 @@ public class ToolsController {
 
             // 构建目标文件的存储路径
             // constant.BaseUrl 表示基础路径，file.getOriginalFilename() 获取原始文件名
-            Path targetLocation = Paths.get(constant.BaseUrl).resolve(file.getOriginalFilename());
+            Path targetLocation = FileTransfer.resolve(constant.BaseUrl, file.getOriginalFilename());
+
+            // 按内容寻址存储时，文件名只记录为指向内容的引用，相同内容只保存一份
+            if (dedup != null ? dedup : constant.ContentAddressedStorage) {
+                try (InputStream in = file.getInputStream()) {
+                    ContentStore.Stored stored = ContentStore.store(in, targetLocation, overwrite);
+                    return ResponseEntity.ok("文件上传成功: " + file.getOriginalFilename()
+                            + (stored.isDeduplicated() ? "（内容已存在，未重复存储）" : ""));
+                }
+            }
 
-            // 将上传的文件内容复制到目标位置
-            // file.getInputStream() 获取文件输入流，targetLocation 表示目标路径
-            // StandardCopyOption.REPLACE_EXISTING 表示如果目标文件存在，则替换它
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            // 将上传的文件内容复制到目标位置，如果目标文件存在，则替换它
+            // 复制的同时计算摘要并写入摘要索引
+            try (InputStream in = file.getInputStream()) {
+                FileTransfer.UploadResult result = FileTransfer.receive(in, targetLocation,
+                        constant.MaxFileSize, DigestIndex.ALGORITHMS);
+                DigestIndex.record(targetLocation, result.getSize(), result.getLastModified(), result.getDigests());
+                ContentStore.forget(targetLocation);
+            }
 
             // 如果文件上传成功，返回HTTP状态码200（OK）和成功信息
             return ResponseEntity.ok("文件上传成功: " + file.getOriginalFilename());
-        } catch (IOException ex) {
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IOException | NoSuchAlgorithmException ex) {
             // 捕获处理文件时可能发生的IOException
             // 返回HTTP状态码500（INTERNAL_SERVER_ERROR）和错误信息
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("无法上传文件: " + ex.getMessage());
@@ -83,59 +140,342 @@ public class ToolsController {
 
 
     /**
-     * 根据文件名下载文件。
+     * 流式上传文件：请求体即文件内容，只读取一次并直接写入目标位置，
+     * 同时计算文件大小和摘要，不经过multipart临时文件。
+     * @param fileName 保存的文件名
+     * @param dedup 是否按内容寻址存储，默认取 constant.ContentAddressedStorage
+     * @param overwrite 按内容寻址存储时，文件名已指向其它内容是否覆盖
+     * @param request HTTP请求
+     * @return 文件大小、摘要和上传吞吐量
+     */
+    @PutMapping("/upload/{fileName:.+}")
+    public ResponseEntity<Map<String, String>> uploadFileStream(
+            @PathVariable String fileName,
+            @RequestParam(value = "dedup", required = false) Boolean dedup,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite,
+            HttpServletRequest request) {
+        try {
+            // 请求头中声明的大小已经超过限制时直接拒绝，不读取请求体
+            if (request.getContentLengthLong() > constant.MaxFileSize) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body(Collections.singletonMap("error", "文件大小超过限制: 512MB"));
+            }
+
+            Path targetLocation = FileTransfer.resolve(constant.BaseUrl, fileName);
+            if (dedup != null ? dedup : constant.ContentAddressedStorage) {
+                long start = System.nanoTime();
+                ContentStore.Stored stored = ContentStore.store(request.getInputStream(), targetLocation, overwrite);
+                FileMeta meta = FileMetaCache.getImmutable(stored.getPath());
+
+                Map<String, String> response = new LinkedHashMap<>();
+                response.put("fileName", targetLocation.getFileName().toString());
+                response.put("size", String.valueOf(meta.getSize()));
+                response.putAll(DigestIndex.lookupOrCompute(stored.getPath(), meta));
+                response.put("deduplicated", String.valueOf(stored.isDeduplicated()));
+                response.put("elapsedMs", String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                return ResponseEntity.ok(response);
+            }
+
+            FileTransfer.UploadResult result = FileTransfer.receive(request.getInputStream(), targetLocation,
+                    constant.MaxFileSize, DigestIndex.ALGORITHMS);
+            DigestIndex.record(targetLocation, result.getSize(), result.getLastModified(), result.getDigests());
+            ContentStore.forget(targetLocation);
+
+            Map<String, String> response = new LinkedHashMap<>();
+            response.put("fileName", targetLocation.getFileName().toString());
+            response.put("size", String.valueOf(result.getSize()));
+            response.putAll(result.getDigests());
+            response.put("elapsedMs", String.valueOf(TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos())));
+            response.put("throughput", String.format("%.2f MB/s", result.getThroughput()));
+            return ResponseEntity.ok(response);
+        } catch (FileTransfer.FileTooLargeException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法上传文件: " + ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 初始化分片上传会话，按文件大小预分配存储空间。
+     * @param fileName 保存的文件名
+     * @param size 文件总大小（字节）
+     * @param chunkSize 分片大小（字节）
+     * @return 会话编号、分片大小和分片数量
+     */
+    @PostMapping("/upload/chunked")
+    public ResponseEntity<Map<String, Object>> initChunkedUpload(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("size") long size,
+            @RequestParam(value = "chunkSize", defaultValue = "" + constant.ChunkSize) int chunkSize) {
+        try {
+            ChunkedUpload.Session session = ChunkedUpload.init(fileName, size, chunkSize);
+            return ResponseEntity.ok(chunkedUploadStatus(session));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法创建上传会话: " + ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 上传一个分片，请求体即分片内容。分片可以乱序、并行上传，重复上传同一分片会覆盖原内容，
+     * 重传失败时该分片回到未收到状态，需要再次上传。
+     * @param uploadId 会话编号
+     * @param index 分片编号，从0开始
+     * @param request HTTP请求
+     * @return 分片写入结果
+     */
+    @PutMapping("/upload/chunked/{uploadId}/{index}")
+    public ResponseEntity<Map<String, Object>> uploadChunk(@PathVariable String uploadId,
+                                                           @PathVariable int index,
+                                                           HttpServletRequest request) {
+        try {
+            long written = ChunkedUpload.writeChunk(uploadId, index, request.getInputStream());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("index", index);
+            response.put("size", written);
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (FileTransfer.FileTooLargeException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法写入分片: " + ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 查询分片上传进度，返回缺失的分片编号，客户端据此续传。
+     * @param uploadId 会话编号
+     * @return 上传进度
+     */
+    @GetMapping("/upload/chunked/{uploadId}")
+    public ResponseEntity<Map<String, Object>> chunkedUploadStatus(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadStatus(ChunkedUpload.get(uploadId)));
+        } catch (NoSuchElementException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("error", ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 提交分片上传，所有分片到齐后文件才会出现在下载目录中。
+     * @param uploadId 会话编号
+     * @param dedup 是否按内容寻址存储，默认取 constant.ContentAddressedStorage
+     * @param overwrite 按内容寻址存储时，文件名已指向其它内容是否覆盖
+     * @return 提交结果
+     */
+    @PostMapping("/upload/chunked/{uploadId}/commit")
+    public ResponseEntity<Map<String, Object>> commitChunkedUpload(
+            @PathVariable String uploadId,
+            @RequestParam(value = "dedup", required = false) Boolean dedup,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        try {
+            if (dedup != null ? dedup : constant.ContentAddressedStorage) {
+                Path target = ChunkedUpload.get(uploadId).getTarget();
+                Path temp = ChunkedUpload.commit(uploadId, ContentStore.newTempFile());
+                FileMeta meta = FileMeta.of(temp);
+                Map<String, String> digests;
+                try (InputStream in = Files.newInputStream(temp)) {
+                    digests = StreamHasher.hash(in, meta.getSize() > PARALLEL_HASH_THRESHOLD, DigestIndex.ALGORITHMS);
+                }
+                ContentStore.Stored stored = ContentStore.adopt(temp, target, digests, overwrite);
+
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("fileName", target.getFileName().toString());
+                response.put("size", meta.getSize());
+                response.putAll(digests);
+                response.put("deduplicated", stored.isDeduplicated());
+                return ResponseEntity.ok(response);
+            }
+
+            Path target = ChunkedUpload.commit(uploadId);
+            ContentStore.forget(target);
+            FileMeta meta = FileMeta.of(target);
+
+            // 分片乱序到达，无法边写边算，提交时读取一次文件写入摘要索引
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("fileName", target.getFileName().toString());
+            response.put("size", meta.getSize());
+            response.putAll(DigestIndex.lookupOrCompute(target, meta));
+            return ResponseEntity.ok(response);
+        } catch (NoSuchElementException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法提交上传: " + ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 放弃分片上传并删除已上传的数据。
+     * @param uploadId 会话编号
+     * @return 处理结果
+     */
+    @DeleteMapping("/upload/chunked/{uploadId}")
+    public ResponseEntity<String> abortChunkedUpload(@PathVariable String uploadId) {
+        try {
+            ChunkedUpload.abort(uploadId);
+            return ResponseEntity.ok("上传已取消: " + uploadId);
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("无法取消上传: " + ex.getMessage());
+        }
+    }
+
+
+    private static Map<String, Object> chunkedUploadStatus(ChunkedUpload.Session session) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("uploadId", session.getUploadId());
+        status.put("fileName", session.getFileName());
+        status.put("size", session.getSize());
+        status.put("chunkSize", session.getChunkSize());
+        status.put("chunkCount", session.getChunkCount());
+        status.put("received", session.receivedCount());
+        status.put("missing", session.missingChunks());
+        return status;
+    }
+
+
+    /**
+     * 根据文件名下载文件。支持断点续传（Range）和条件请求（ETag / Last-Modified）。
      * @param fileName 要下载的文件名
-     * @return 文件资源
-     * @throws Exception 文件不存在或不可读时抛出异常
+     * @param request HTTP请求
+     * @param response HTTP响应
      */
     @GetMapping("/download/{fileName:.+}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String fileName) throws Exception {
-        Path filePath = Paths.get(constant.BaseUrl).resolve(fileName).normalize();
-        Resource resource = new UrlResource(filePath.toUri());
+    public void downloadFile(@PathVariable String fileName, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        try {
+            Path filePath = FileTransfer.resolve(constant.BaseUrl, fileName);
+            FileMeta meta = storedFileMeta(filePath);
+            if (meta == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "无法读取文件: " + fileName);
+                return;
+            }
+
+            // 摘要索引中有记录时，用SHA-256作为强ETag并返回Digest响应头
+            Map<String, String> digests = DigestIndex.lookup(meta.getPath(), meta);
+            if (digests != null) {
+                String sha256 = digests.get("SHA-256");
+                response.setHeader("Digest", "sha-256=" + Base64.getEncoder()
+                        .encodeToString(DatatypeConverter.parseHexBinary(sha256)));
+                meta = meta.withEtag("\"" + sha256.toLowerCase() + "\"");
+            }
+            FileServer.serve(meta, FileServer.attachment(filePath.getFileName().toString()), request, response);
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
 
-        if (!resource.exists() || !resource.isReadable()) {
-            throw new Exception("无法读取文件: " + fileName);
+
+    /**
+     * 查询已存储文件的摘要。上传时已写入摘要索引的文件直接返回索引内容，不读取文件。
+     * @param fileName 文件名
+     * @return 文件大小和 MD5、SHA-256、SHA-3 摘要
+     */
+    @GetMapping("/digest/{fileName:.+}")
+    public ResponseEntity<Map<String, Object>> getFileDigest(@PathVariable String fileName) {
+        try {
+            Path filePath = FileTransfer.resolve(constant.BaseUrl, fileName);
+            FileMeta meta = storedFileMeta(filePath);
+            if (meta == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Collections.singletonMap("error", "无法读取文件: " + fileName));
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("fileName", filePath.getFileName().toString());
+            response.put("size", meta.getSize());
+            response.putAll(DigestIndex.lookupOrCompute(meta.getPath(), meta));
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法计算哈希值: " + ex.getMessage()));
         }
+    }
+
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+    // 先按文件名查内容寻址存储，没有记录时再读取同名的普通文件
+    private static FileMeta storedFileMeta(Path filePath) throws IOException {
+        Path blob = ContentStore.lookup(filePath);
+        if (blob == null) {
+            return FileMetaCache.get(filePath);
+        }
+        FileMeta meta = FileMetaCache.getImmutable(blob);
+        return meta == null ? null : meta.withContentType(FileMeta.contentTypeOf(filePath.getFileName().toString()));
     }
 
 
     /**
-     * 通过URL显示图片。
+     * 通过URL显示图片。指定宽度或高度时返回缩略图，缩略图生成一次后从磁盘缓存读取，
+     * 生成时与其它图片任务一起受 constant.MaxImageJobs 限制；原图无法解码时返回400，像素过多时返回413。
+     * 文件元数据来自内存缓存，重复访问同一图片不产生额外的文件系统调用。
      * @param fileName 要显示的图片文件名
-     * @return 图片资源
+     * @param width 缩略图宽度（可选）
+     * @param height 缩略图高度（可选）
+     * @param fit 缩放方式：contain（默认）、cover、fill
+     * @param request HTTP请求
+     * @param response HTTP响应
      */
     @GetMapping("/images/{fileName:.+}")
-    public ResponseEntity<Resource> viewImage(@PathVariable String fileName) {
+    public void viewImage(@PathVariable String fileName,
+                          @RequestParam(value = "w", defaultValue = "0") int width,
+                          @RequestParam(value = "h", defaultValue = "0") int height,
+                          @RequestParam(value = "fit", required = false) String fit,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
         try {
-            // 构建图片文件的存储路径
-            Path filePath = Paths.get(constant.ImageUrl).resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            // 检查资源是否存在且可读
-            if (!resource.exists() || !resource.isReadable()) {
-                System.out.println("Requested file not found or not readable: " + fileName);
-                return ResponseEntity.notFound().build();
+            // 构建图片文件的存储路径，需要缩略图时替换为缓存中的缩略图
+            Path filePath = FileTransfer.resolve(constant.ImageUrl, fileName);
+            if (width != 0 || height != 0) {
+                filePath = Thumbnails.thumbnail(filePath, width, height, Thumbnails.Fit.parse(fit));
             }
 
-            // 根据文件扩展名推断内容类型
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE;
+            // 检查文件是否存在且可读
+            FileMeta meta = FileMetaCache.get(filePath);
+            if (meta == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            System.out.println("Serving file: " + fileName + " with content type: " + contentType);
 
-            // 返回图片资源，以及适当的内容类型
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
-        } catch (Exception e) {
+            // 返回图片，以及缓存的内容类型
+            FileServer.serve(meta, null, request, response);
+        } catch (NoSuchFileException ex) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        } catch (RejectedExecutionException ex) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(constant.ImageJobTimeout / 1000));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (ImageConverter.ImageTooLargeException ex) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+        } catch (IOException ex) {
             // 记录异常信息
-            System.out.println("Error serving file: " + fileName + "   " + e);
-            return ResponseEntity.internalServerError().build();
+            System.out.println("Error serving file: " + fileName + "   " + ex);
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
         }
     }
 
@@ -147,26 +487,9 @@ public class ToolsController {
      * @return 转换后的所有温度值
      */
     @GetMapping("/temperature/{unit}/{value}")
-    public ResponseEntity<Map<String, String>> convertTemperature(@PathVariable("value") double value,
-                                                                  @PathVariable("unit") String unit) {
-        try {
-            // 使用UnitConverter类进行温度单位转换
-            Map<String, Double> conversionResult = Converter.convertTemperature(value, unit);
-
-            // 将Double类型的值转换为String类型
-            Map<String, String> convertedResult = new HashMap<>();
-            for (Map.Entry<String, Double> entry : conversionResult.entrySet()) {
-                convertedResult.put(entry.getKey(), String.valueOf(entry.getValue()));
-            }
-
-            // 返回转换后的温度值
-            return ResponseEntity.ok(convertedResult);
-        } catch (Exception ex) {
-            // 捕获处理转换时可能发生的异常
-            // 返回HTTP状态码500（INTERNAL_SERVER_ERROR）和错误信息
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Collections.singletonMap("error", ex.getMessage()));
-        }
+    public ResponseEntity<?> convertTemperature(@PathVariable("value") double value,
+                                                @PathVariable("unit") String unit) {
+        return convertUnits("temperature", value, unit, true);
     }
 
 
@@ -177,26 +500,9 @@ public class ToolsController {
      * @return 转换后的所有长度值
      */
     @GetMapping("/length/{unit}/{value}")
-    public ResponseEntity<Map<String, String>> convertLength(@PathVariable("value") double value,
-                                                             @PathVariable("unit") String unit) {
-        try {
-            // 使用UnitConverter类进行长度单位转换
-            Map<String, Double> conversionResult = Converter.convertLength(value, unit);
-
-            // 将Double类型的值转换为String类型
-            Map<String, String> convertedResult = new HashMap<>();
-            for (Map.Entry<String, Double> entry : conversionResult.entrySet()) {
-                convertedResult.put(entry.getKey(), String.valueOf(entry.getValue()));
-            }
-
-            // 返回转换后的长度值
-            return ResponseEntity.ok(convertedResult);
-        } catch (Exception ex) {
-            // 捕获处理转换时可能发生的异常
-            // 返回HTTP状态码500（INTERNAL_SERVER_ERROR）和错误信息
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Collections.singletonMap("error", ex.getMessage()));
-        }
+    public ResponseEntity<?> convertLength(@PathVariable("value") double value,
+                                           @PathVariable("unit") String unit) {
+        return convertUnits("length", value, unit, true);
     }
 
 
@@ -204,30 +510,13 @@ public class ToolsController {
      * 转换质量单位。
      *
      * @param value 要转换的质量值
-     * @param unit  当前质量单位
+     * @param unit 当前质量单位
      * @return 转换后的所有质量值
      */
     @GetMapping("/mass/{unit}/{value}")
-    public ResponseEntity<Map<String, String>> convertMass(@PathVariable("value") double value,
-                                                           @PathVariable("unit") String unit) {
-        try {
-            // 使用UnitConverter类进行质量单位转换
-            Map<String, Double> conversionResult = Converter.convertMass(value, unit);
-
-            // 将Double类型的值转换为String类型
-            Map<String, String> convertedResult = new HashMap<>();
-            for (Map.Entry<String, Double> entry : conversionResult.entrySet()) {
-                convertedResult.put(entry.getKey(), String.valueOf(entry.getValue()));
-            }
-
-            // 返回转换后的质量值
-            return ResponseEntity.ok(convertedResult);
-        } catch (Exception ex) {
-            // 捕获处理转换时可能发生的异常
-            // 返回HTTP状态码500（INTERNAL_SERVER_ERROR）和错误信息
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Collections.singletonMap("error", ex.getMessage()));
-        }
+    public ResponseEntity<?> convertMass(@PathVariable("value") double value,
+                                         @PathVariable("unit") String unit) {
+        return convertUnits("mass", value, unit, true);
     }
 
 
@@ -235,43 +524,244 @@ public class ToolsController {
      * 转换单位。
      *
      * @param value 要转换的速度值
-     * @param unit  当前速度单位
+     * @param unit 当前速度单位
      * @return 转换后的所有速度值
      */
     @GetMapping("/speed/{unit}/{value}")
-    public ResponseEntity<Map<String, String>> convertSpeed(@PathVariable("value") double value,
-                                                            @PathVariable("unit") String unit) {
+    public ResponseEntity<?> convertSpeed(@PathVariable("value") double value,
+                                          @PathVariable("unit") String unit) {
+        return convertUnits("speed", value, unit, true);
+    }
+
+
+    /**
+     * 列出支持的物理量和单位。
+     * @return 物理量名称 -> (单位名称 -> 单位符号)
+     */
+    @GetMapping("/units")
+    public ResponseEntity<Map<String, Map<String, List<String>>>> listUnits() {
+        return ResponseEntity.ok(Units.list());
+    }
+
+
+    /**
+     * 按单位表达式换算，例如 km/h -> m/s、kg*m/s^2 -> N、MiB/s -> Mbit/s，两边的量纲必须相同。
+     * @param from 原单位表达式
+     * @param to 目标单位表达式
+     * @param value 要转换的值
+     * @return 换算结果、换算系数和量纲
+     */
+    @GetMapping("/units/convert")
+    public ResponseEntity<?> convertExpression(@RequestParam("from") String from,
+                                               @RequestParam("to") String to,
+                                               @RequestParam(value = "value", defaultValue = "1") double value) {
         try {
-            // 使用UnitConverter类进行速度单位转换
-            Map<String, Double> conversionResult = Converter.convertSpeed(value, unit);
+            UnitExpression.Conversion conversion = UnitExpression.compile(from, to);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("from", from);
+            result.put("to", to);
+            result.put("value", value);
+            result.put("result", conversion.apply(value));
+            double factor = conversion.getFactor();
+            result.put("factor", Double.isNaN(factor) ? null : factor);
+            result.put("dimension", conversion.getDimension());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        }
+    }
+
+
+    /**
+     * 把一个值换算成同一物理量的所有单位，支持温度、长度、质量、速度、面积、体积、数据大小和压强。
+     * @param quantity 物理量，例如 length、pressure，见 /units
+     * @param unit 当前单位的符号或名称，不区分大小写
+     * @param value 要转换的值
+     * @return 单位名称 -> 换算结果（数值）
+     */
+    @GetMapping("/units/{quantity}/{unit}/{value}")
+    public ResponseEntity<?> convertQuantity(@PathVariable("quantity") String quantity,
+                                             @PathVariable("unit") String unit,
+                                             @PathVariable("value") double value) {
+        return convertUnits(quantity, value, unit, false);
+    }
 
-            // 将Double类型的值转换为String类型
-            Map<String, String> convertedResult = new HashMap<>();
-            for (Map.Entry<String, Double> entry : conversionResult.entrySet()) {
-                convertedResult.put(entry.getKey(), String.valueOf(entry.getValue()));
+
+    /**
+     * 批量换算同一单位的多个数值，结果边换算边写出。
+     * 请求体为数值组成的JSON数组（Content-Type: application/json）时输出JSON：一个目标单位时为数组，
+     * 多个时为 {"单位名称": [...]}；否则按行读取，每行一个数值，每行输出一个结果，多个目标单位以逗号分隔。
+     * 逐行输入时请使用 text/plain 或 application/x-ndjson，表单类型的请求体会被容器当作表单参数读取。
+     * @param quantity 物理量，例如 temperature、length，见 /units
+     * @param from 当前单位
+     * @param to 目标单位，可以有多个，默认为该物理量的所有单位
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    @PostMapping("/units/{quantity}/batch")
+    public void convertUnitsBatch(@PathVariable("quantity") String quantity,
+                                  @RequestParam("from") String from,
+                                  @RequestParam(value = "to", required = false) String[] to,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try {
+            Units.Quantity units = Units.quantity(quantity);
+            Units.Unit source = units.unit(from);
+            Units.Unit[] targets = units.units(to);
+            String contentType = request.getContentType();
+            if (contentType != null && contentType.contains("json") && !contentType.contains("ndjson")) {
+                response.setContentType("application/json;charset=UTF-8");
+                UnitBatch.convertJson(request.getInputStream(), response.getOutputStream(), source, targets);
+            } else {
+                response.setContentType("text/plain;charset=UTF-8");
+                UnitBatch.convertLines(request.getInputStream(), response.getOutputStream(), source, targets);
             }
+        } catch (IllegalArgumentException | JsonProcessingException ex) {
+            if (response.isCommitted()) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
 
-            // 返回转换后的速度值
-            return ResponseEntity.ok(convertedResult);
-        } catch (Exception ex) {
-            // 捕获处理转换时可能发生的异常
-            // 返回HTTP状态码500（INTERNAL_SERVER_ERROR）和错误信息
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Collections.singletonMap("error", ex.getMessage()));
+
+    // 换算并直接生成JSON，不经过中间的 Map；quoted 为 true 时数值写成字符串，与原来的温度、长度等接口一致
+    private static ResponseEntity<?> convertUnits(String quantityName, double value, String unit, boolean quoted) {
+        try {
+            Units.Quantity quantity = Units.quantity(quantityName);
+            Units.Unit from = quantity.unit(unit);
+            StringBuilder json = new StringBuilder(quantity.size() * 48);
+            quantity.writeJson(value, from, quoted, json);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json.toString());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
         }
     }
 
 
     /**
-     * 生成二维码并返回给客户端。
+     * 生成二维码并返回给客户端。相同文本的二维码从缓存读取，GET 请求支持 If-None-Match 条件请求。
      * @param text 用户提供的文本或URL
+     * @param format 输出格式：png（默认）或 svg
+     * @param size 图片边长（可选），默认500
+     * @param margin 四周空白的模块数（可选），默认4
+     * @param ec 纠错级别 L、M、Q、H（可选），默认L
+     * @param ifNoneMatch If-None-Match 请求头（可选）
+     * @param request HTTP请求
      * @return 生成的二维码图像
      */
-    @PostMapping(path = "/qrcode", produces = "application/json; charset=UTF-8")
-    public ResponseEntity<byte[]> generateQRCode(@RequestParam(value = "text", required = true) String text) {
+    @RequestMapping(path = "/qrcode", method = {RequestMethod.GET, RequestMethod.POST},
+            produces = "application/json; charset=UTF-8")
+    public ResponseEntity<byte[]> generateQRCode(
+            @RequestParam(value = "text", required = true) String text,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "size", defaultValue = "" + QrCodes.DEFAULT_SIZE) int size,
+            @RequestParam(value = "margin", defaultValue = "" + QrCodes.DEFAULT_MARGIN) int margin,
+            @RequestParam(value = "ec", required = false) String ec,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request) {
+        QrCodes.Options options;
+        try {
+            options = QrCodes.Options.parse(format, size, margin, ec);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage().getBytes(StandardCharsets.UTF_8));
+        }
         // 使用Generator类生成二维码
-        System.out.println(text);
-        return Generator.generateQRCode(text);
+        return Generator.generateQRCode(text, options, "GET".equals(request.getMethod()) ? ifNoneMatch : null);
+    }
+
+
+    /**
+     * 批量生成二维码，结果以ZIP压缩包流式返回。请求体为文本列表，每行一个二维码。
+     * 请求体的 Content-Type 不能是表单编码（application/x-www-form-urlencoded），否则会被当作表单参数读取。
+     * @param input 请求体格式：csv（默认，每行 "文本"；以 name,text 表头开头或文件名带引号时为 "文件名",文本）
+     *              或 ndjson（每行 {"text":..., "name":...}）
+     * @param format 图片格式：png（默认）或 svg
+     * @param size 图片边长（可选），默认500
+     * @param margin 四周空白的模块数（可选），默认4
+     * @param ec 纠错级别 L、M、Q、H（可选），默认L
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    @PostMapping("/qrcode/batch")
+    public void generateQRCodeBatch(
+            @RequestParam(value = "input", defaultValue = "csv") String input,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "size", defaultValue = "" + QrCodes.DEFAULT_SIZE) int size,
+            @RequestParam(value = "margin", defaultValue = "" + QrCodes.DEFAULT_MARGIN) int margin,
+            @RequestParam(value = "ec", required = false) String ec,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        QrCodes.Options options;
+        try {
+            options = QrCodes.Options.parse(format, size, margin, ec);
+            if (!"csv".equalsIgnoreCase(input) && !"ndjson".equalsIgnoreCase(input)) {
+                throw new IllegalArgumentException("不支持的输入格式: " + input);
+            }
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, FileServer.attachment("qrcodes.zip"));
+        QrBatch.generate(request.getInputStream(), "ndjson".equalsIgnoreCase(input), options,
+                response.getOutputStream());
+    }
+
+
+    /**
+     * 识别图片中的二维码或条形码。可以一次上传多张图片，多张图片并行识别，一张图片失败不影响其它图片。
+     * @param files 图片文件，一张或多张，最多 constant.MaxQrDecodeFiles 张
+     * @return 每张图片的识别结果，顺序与上传顺序一致
+     */
+    @PostMapping("/qrcode/decode")
+    public ResponseEntity<List<Map<String, Object>>> decodeQRCode(@RequestParam("file") MultipartFile[] files) {
+        if (files.length > constant.MaxQrDecodeFiles) {
+            return ResponseEntity.badRequest().body(Collections.singletonList(Collections.singletonMap("error",
+                    "一次最多识别 " + constant.MaxQrDecodeFiles + " 张图片")));
+        }
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            Callable<Map<String, Object>> task = () -> {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("fileName", file.getOriginalFilename());
+                try (InputStream in = file.getInputStream()) {
+                    long start = System.nanoTime();
+                    result.putAll(QrDecoder.decode(in));
+                    result.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (NotFoundException ex) {
+                    result.put("error", "未识别到二维码或条形码");
+                } catch (IOException ex) {
+                    result.put("error", "无法读取图片: " + ex.getMessage());
+                } catch (RuntimeException ex) {
+                    // 解码器对损坏的图片可能抛出各种运行时异常，只记录在这张图片的结果中
+                    result.put("error", "识别失败: " + ex);
+                }
+                return result;
+            };
+            futures.add(Workers.CPU.submit(task));
+        }
+
+        try {
+            List<Map<String, Object>> results = new ArrayList<>(files.length);
+            for (Future<Map<String, Object>> future : futures) {
+                results.add(future.get());
+            }
+            return ResponseEntity.ok(results);
+        } catch (InterruptedException | ExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonList(Collections.singletonMap("error", "识别失败: " + ex.getMessage())));
+        }
+    }
+
+
+    /**
+     * 查询二维码缓存的命中率和占用的内存。
+     * @return 命中、未命中、淘汰次数，条目数和字节数
+     */
+    @GetMapping("/qrcode/stats")
+    public ResponseEntity<Map<String, Long>> qrCodeStats() {
+        return ResponseEntity.ok(QrCodes.stats());
     }
 
 
@@ -304,38 +794,224 @@ public class ToolsController {
     }
 
 
+    /**
+     * 批量生成密码，每行一个，边生成边写出，数量最多为 constant.MaxBulkPasswords。
+     * @param count 密码数量
+     * @param length 密码长度
+     * @param includeUppercase 是否包含大写字母
+     * @param includeLowercase 是否包含小写字母
+     * @param includeNumbers 是否包含数字
+     * @param includeSpecial 是否包含特殊字符
+     * @param response HTTP响应，内容为纯文本
+     */
+    @PostMapping("/password/bulk")
+    public void generatePasswords(
+            @RequestParam("count") long count,
+            @RequestParam(value = "length", defaultValue = "12") int length,
+            @RequestParam(value = "includeUppercase", defaultValue = "true") boolean includeUppercase,
+            @RequestParam(value = "includeLowercase", defaultValue = "true") boolean includeLowercase,
+            @RequestParam(value = "includeNumbers", defaultValue = "true") boolean includeNumbers,
+            @RequestParam(value = "includeSpecial", defaultValue = "true") boolean includeSpecial,
+            HttpServletResponse response) throws IOException {
+        try {
+            Passwords.CharacterSet characters = Passwords.characterSet(
+                    includeUppercase, includeLowercase, includeNumbers, includeSpecial);
+            response.setContentType("text/plain;charset=UTF-8");
+            // 密码不应被任何缓存保存
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            Passwords.write(response.getOutputStream(), count, length, characters);
+        } catch (IllegalArgumentException e) {
+            if (response.isCommitted()) {
+                throw new IOException(e.getMessage(), e);
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+
+    /**
+     * 估计密码的强度：与常见密码、键盘序列和英文单词比对，给出熵、分数（0-4）和各种场景下的破解时间。
+     * 密码放在请求体中提交，不出现在URL和访问日志里。
+     * @param password 要检查的密码
+     * @return 强度估计结果
+     */
+    @PostMapping("/password/strength")
+    public ResponseEntity<?> estimatePasswordStrength(@RequestParam("password") String password) {
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(PasswordStrength.estimate(password));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+
+    /**
+     * 生成由随机单词组成的密码短语（diceware）。
+     * @param words 单词数量
+     * @param separator 单词之间的分隔符
+     * @param capitalize 是否把每个单词的首字母大写
+     * @return 密码短语和它的熵（位）
+     */
+    @PostMapping("/password/passphrase")
+    public ResponseEntity<?> generatePassphrase(
+            @RequestParam(value = "words", defaultValue = "6") int words,
+            @RequestParam(value = "separator", defaultValue = "-") String separator,
+            @RequestParam(value = "capitalize", defaultValue = "false") boolean capitalize) {
+        try {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("passphrase", Passwords.passphrase(words, separator, capitalize));
+            result.put("words", words);
+            result.put("entropy", Math.round(Passwords.passphraseEntropy(words) * 100) / 100.0);
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+
     /**
      * 生成像素风格的图像并返回给客户端。
+     * 原图只解码一次，解码后的像素数不超过 constant.MaxConvertPixels，结果逐行写出；同时处理的图片数量受 constant.MaxImageJobs 限制。
      *
-     * @param originalImage 原始图像的字节数组
+     * @param originalImage 原始图像
      * @param pixelSize     像素的尺寸
-     * @return 包含像素风格图像的字节数组
+     * @param mode          取色方式：sample（默认，取块左上角的颜色）或 average（取块内的平均颜色）
+     * @param response      HTTP响应，内容为PNG图片
      */
+    @SuppressWarnings("try")
     @PostMapping(path = "/pixel", produces = "image/png")
-    public ResponseEntity<byte[]> generatePixelImage(@RequestParam("image") MultipartFile originalImage,
-                                                     @RequestParam("pixelSize") int pixelSize) {
-        try {
-            // 检查上传的文件是否为空。如果文件为空，则返回400状态码和错误消息。
-            if (originalImage.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("No image file provided.".getBytes());
+    public void generatePixelImage(@RequestParam("image") MultipartFile originalImage,
+                                   @RequestParam("pixelSize") int pixelSize,
+                                   @RequestParam(value = "mode", required = false) String mode,
+                                   HttpServletResponse response) throws IOException {
+        // 检查上传的文件是否为空。如果文件为空，则返回400状态码和错误消息。
+        if (originalImage.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No image file provided.");
+            return;
+        }
+        // 从文件读取原图，上传的文件已经在磁盘上，transferTo 在同一文件系统中只是改名
+        Path source = Files.createTempFile("pixel", ".tmp");
+        try (ImageJobs.Permit permit = ImageJobs.acquire()) {
+            PixelArt.Mode pixelMode = PixelArt.Mode.parse(mode);
+            originalImage.transferTo(source.toFile());
+            response.setContentType("image/png");
+            PixelArt.render(source, response.getOutputStream(), pixelSize, pixelMode);
+        } catch (RejectedExecutionException ex) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(constant.ImageJobTimeout / 1000));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (ImageConverter.ImageTooLargeException ex) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+        } catch (IOException ex) {
+            // 已经开始写出图片时无法再返回错误状态
+            if (response.isCommitted()) {
+                throw ex;
             }
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error generating pixel art: " + ex.getMessage());
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
 
-            // 将上传的图像文件转换为字节数组，以便进一步处理。
-            byte[] imageBytes = originalImage.getBytes();
-            ByteArrayInputStream imageStream = new ByteArrayInputStream(imageBytes);
-            BufferedImage bufferedImage = ImageIO.read(imageStream);
 
-            // 调用下面的方法生成像素风格的图像。
-            BufferedImage pixelArtImage = generatePixelArt(bufferedImage, pixelSize);
+    /**
+     * 转换图片格式并重新压缩，结果直接返回给客户端。同时处理的图片数量受 constant.MaxImageJobs 限制。
+     * @param image 原图
+     * @param format 输出格式：png、jpeg（jpg）、bmp、gif
+     * @param quality JPEG 质量 1-100，默认 85
+     * @param strip 是否去掉 EXIF 等元数据，默认去掉；格式不变且没有缩放时才能保留
+     * @param maxWidth 最大宽度，超过时等比缩小，默认不限制
+     * @param maxHeight 最大高度，超过时等比缩小，默认不限制
+     * @param response HTTP响应，内容为转换后的图片
+     */
+    @SuppressWarnings("try")
+    @PostMapping("/image/convert")
+    public void convertImage(@RequestParam("image") MultipartFile image,
+                             @RequestParam("format") String format,
+                             @RequestParam(value = "quality", defaultValue = "85") int quality,
+                             @RequestParam(value = "strip", defaultValue = "true") boolean strip,
+                             @RequestParam(value = "maxWidth", defaultValue = "0") int maxWidth,
+                             @RequestParam(value = "maxHeight", defaultValue = "0") int maxHeight,
+                             HttpServletResponse response) throws IOException {
+        try {
+            ImageConverter.Options options = ImageConverter.Options.parse(format, quality, strip, maxWidth, maxHeight);
+            try (ImageJobs.Permit permit = ImageJobs.acquire();
+                 ImageInputStream input = ImageIO.createImageInputStream(image.getInputStream())) {
+                response.setContentType(options.getFormat().getContentType());
+                ImageConverter.convert(input, response.getOutputStream(), options);
+            }
+        } catch (RejectedExecutionException ex) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(constant.ImageJobTimeout / 1000));
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (ImageConverter.ImageTooLargeException ex) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+        } catch (IOException ex) {
+            if (response.isCommitted()) {
+                throw ex;
+            }
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "无法转换图片: " + ex.getMessage());
+        }
+    }
 
-            // 将生成的像素风格图像转换为字节数组，以便作为响应返回。
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(pixelArtImage, "png", outputStream);
 
-            return ResponseEntity.ok().body(outputStream.toByteArray());
+    /**
+     * 转换图片格式并保存到图片目录，之后可以通过 /images/{fileName} 访问。
+     * @param image 原图
+     * @param format 输出格式：png、jpeg（jpg）、bmp、gif
+     * @param quality JPEG 质量 1-100，默认 85
+     * @param strip 是否去掉 EXIF 等元数据，默认去掉
+     * @param maxWidth 最大宽度，默认不限制
+     * @param maxHeight 最大高度，默认不限制
+     * @param name 保存的文件名，默认为原文件名换成新格式的扩展名
+     * @param overwrite 文件已存在时是否覆盖
+     * @return 保存的文件名、访问地址、大小以及转换前后的格式与尺寸
+     */
+    @SuppressWarnings("try")
+    @PostMapping(path = "/image/convert", params = "store=true")
+    public ResponseEntity<Map<String, Object>> convertAndStoreImage(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("format") String format,
+            @RequestParam(value = "quality", defaultValue = "85") int quality,
+            @RequestParam(value = "strip", defaultValue = "true") boolean strip,
+            @RequestParam(value = "maxWidth", defaultValue = "0") int maxWidth,
+            @RequestParam(value = "maxHeight", defaultValue = "0") int maxHeight,
+            @RequestParam(value = "name", required = false) String name,
+            @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        try {
+            ImageConverter.Options options = ImageConverter.Options.parse(format, quality, strip, maxWidth, maxHeight);
+            if (name == null || name.isEmpty()) {
+                String original = image.getOriginalFilename() == null ? "image" : image.getOriginalFilename();
+                int dot = original.lastIndexOf('.');
+                name = (dot > 0 ? original.substring(0, dot) : original) + "." + options.getFormat().getExtension();
+            }
+            Path target = FileTransfer.resolve(constant.ImageUrl, name);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("name", name);
+            result.put("url", "/images/" + name);
+            try (ImageJobs.Permit permit = ImageJobs.acquire();
+                 ImageInputStream input = ImageIO.createImageInputStream(image.getInputStream())) {
+                result.putAll(ImageConverter.convert(input, target, options, overwrite));
+            }
+            return ResponseEntity.ok(result);
+        } catch (RejectedExecutionException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(constant.ImageJobTimeout / 1000))
+                    .body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (FileAlreadyExistsException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Collections.singletonMap("error", "文件已存在: " + name));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", ex.getMessage()));
+        } catch (ImageConverter.ImageTooLargeException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Collections.singletonMap("error", ex.getMessage()));
         } catch (IOException ex) {
-            // 在处理图像或发送响应时捕获并处理IO异常。
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(("Error generating pixel art: " + ex.getMessage()).getBytes());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法转换图片: " + ex.getMessage()));
         }
     }
 
@@ -416,6 +1092,77 @@ public class ToolsController {
     }
 
 
+    /**
+     * 按行对比上传的两个文件，以统一格式（unified diff）流式返回差异，适用于很大的日志和配置文件。
+     * 没有差异时响应内容为空。
+     * @param original 原文件
+     * @param compared 对比的文件
+     * @param context 每处差异前后显示的相同行数
+     * @param response HTTP响应
+     */
+    @PostMapping("/text/diff")
+    public void compareFiles(@RequestParam("original") MultipartFile original,
+                             @RequestParam("compared") MultipartFile compared,
+                             @RequestParam(value = "context", defaultValue = "3") int context,
+                             HttpServletResponse response) throws IOException {
+        Path originalFile = Files.createTempFile("diff", ".tmp");
+        Path comparedFile = Files.createTempFile("diff", ".tmp");
+        try {
+            // 上传的文件已经在磁盘上，transferTo 在同一文件系统中只是改名
+            original.transferTo(originalFile.toFile());
+            compared.transferTo(comparedFile.toFile());
+            writeDiff(originalFile, comparedFile, original.getOriginalFilename(), compared.getOriginalFilename(),
+                    context, response);
+        } finally {
+            Files.deleteIfExists(originalFile);
+            Files.deleteIfExists(comparedFile);
+        }
+    }
+
+
+    /**
+     * 按行对比服务器上的两个文件，以统一格式流式返回差异。没有差异时响应内容为空。
+     * @param original 原文件名
+     * @param compared 对比的文件名
+     * @param context 每处差异前后显示的相同行数
+     * @param response HTTP响应
+     */
+    @GetMapping("/text/diff")
+    public void compareStoredFiles(@RequestParam("original") String original,
+                                   @RequestParam("compared") String compared,
+                                   @RequestParam(value = "context", defaultValue = "3") int context,
+                                   HttpServletResponse response) throws IOException {
+        try {
+            FileMeta originalMeta = storedFileMeta(FileTransfer.resolve(constant.BaseUrl, original));
+            FileMeta comparedMeta = storedFileMeta(FileTransfer.resolve(constant.BaseUrl, compared));
+            if (originalMeta == null || comparedMeta == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND,
+                        "无法读取文件: " + (originalMeta == null ? original : compared));
+                return;
+            }
+            writeDiff(originalMeta.getPath(), comparedMeta.getPath(), original, compared, context, response);
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+
+    // 对比两个文件并写入响应，参数错误时返回400
+    private static void writeDiff(Path original, Path compared, String originalLabel, String comparedLabel,
+                                  int context, HttpServletResponse response) throws IOException {
+        try {
+            response.setContentType("text/plain;charset=UTF-8");
+            FileDiff.diff(original, compared, originalLabel, comparedLabel, context, response.getOutputStream());
+        } catch (IllegalArgumentException ex) {
+            if (response.isCommitted()) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+
     /**
      * 查询用户的公网IP地址并提供地理位置查询功能。
      * @param request HTTP请求
@@ -424,8 +1171,8 @@ public class ToolsController {
     @GetMapping("/ip")
     public ResponseEntity<String> getIpLocation(HttpServletRequest request) {
         try {
-            // 获取用户的公网IP地址
-            String ipAddress = request.getRemoteAddr();
+            // 获取用户的公网IP地址，经过可信代理时取转发请求头中的客户端地址
+            String ipAddress = ClientIpResolver.resolve(request);
 
             System.out.println(ipAddress);
 
@@ -442,25 +1189,62 @@ public class ToolsController {
     }
 
 
+    /**
+     * 重新加载IP地理位置数据库，新数据库校验通过后替换旧数据库，加载期间查询不受影响。
+     * @return 新数据库的来源、大小和加载时间
+     */
+    @PostMapping("/ip/reload")
+    public ResponseEntity<Map<String, Object>> reloadIpRegion() {
+        try {
+            return ResponseEntity.ok(IpRegionUtil.reload());
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "无法加载IP数据库: " + ex.getMessage()));
+        }
+    }
+
 
     /**
-     * @description:对文件进行MD5、SHA-256和SHA-3哈希转换。
-     * @param file 要转换的文件
-     * @param file
-     * @return 哈希转换结果
+     * 批量标注IP地址的地理位置。请求体为日志等文本，每行取第一个IPv4地址，
+     * 结果边查询边写出，不把整个文件读入内存。
+     * @param format 输出格式：csv（默认）或 ndjson
+     * @param request HTTP请求
+     * @param response HTTP响应
      */
-    @PostMapping("/hash")
-    public ResponseEntity<Map<String, String>> hashFile(@RequestParam("file") MultipartFile file) {
+    @PostMapping("/ip/batch")
+    public void enrichIpBatch(@RequestParam(value = "format", required = false) String format,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        IpEnricher.Format outputFormat;
         try {
-            Map<String, String> hashes = new HashMap<>();
-            byte[] fileContent = file.getBytes();
+            outputFormat = IpEnricher.Format.parse(format);
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+            return;
+        }
+        response.setContentType(outputFormat.getContentType());
+        IpEnricher.enrich(request.getInputStream(), response.getOutputStream(), outputFormat);
+    }
 
-            hashes.put("MD5", Converter.calculateHash(fileContent, "MD5"));
-            hashes.put("SHA-256", Converter.calculateHash(fileContent, "SHA-256"));
-            hashes.put("SHA-3", Converter.calculateHash(fileContent, "SHA3-256"));
 
-            return ResponseEntity.ok(hashes);
-        } catch (IOException | NoSuchAlgorithmException ex) {
+
+    /**
+     * @description:对文件进行MD5、SHA-256和SHA-3哈希转换。文件只读取一次，按固定大小的缓冲区同时送入所有算法。
+     * @param file 要转换的文件
+     * @param algorithms 算法列表（可选），默认 MD5、SHA-256、SHA-3，另支持 CRC32、CRC32C、Adler32 等
+     * @param parallel 是否由多个线程同时计算各个算法（可选），默认在大文件时启用
+     * @return 哈希转换结果
+     */
+    @PostMapping("/hash")
+    public ResponseEntity<Map<String, String>> hashFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "algorithms", defaultValue = "MD5,SHA-256,SHA-3") String[] algorithms,
+            @RequestParam(value = "parallel", required = false) Boolean parallel) {
+        try (InputStream in = file.getInputStream()) {
+            boolean useParallel = parallel != null ? parallel : file.getSize() > PARALLEL_HASH_THRESHOLD;
+            return ResponseEntity.ok(StreamHasher.hash(in, useParallel, algorithms));
+        } catch (NoSuchAlgorithmException ex) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "不支持的哈希算法: " + ex.getMessage()));
+        } catch (IOException ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("error", "无法计算哈希值: " + ex.getMessage()));
         }
     }
@@ -475,14 +1259,11 @@ public class ToolsController {
     @PostMapping("/hashText")
     public ResponseEntity<Map<String, String>> hashText(@RequestParam("text") String text) {
         try {
-            Map<String, String> hashes = new HashMap<>();
             byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
 
-            hashes.put("MD5", Converter.calculateHash(textBytes, "MD5"));
-            hashes.put("SHA-256", Converter.calculateHash(textBytes, "SHA-256"));
-            hashes.put("SHA-3", Converter.calculateHash(textBytes, "SHA3-256"));
-
-            return ResponseEntity.ok(hashes);
+            StreamHasher hasher = new StreamHasher("MD5", "SHA-256", "SHA-3");
+            hasher.update(textBytes, 0, textBytes.length);
+            return ResponseEntity.ok(hasher.digests());
         } catch (NoSuchAlgorithmException ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Collections.singletonMap("error", "无法计算哈希值: " + ex.getMessage()));
         }
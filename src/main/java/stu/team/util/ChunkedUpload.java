@@ -0,0 +1,356 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 可续传的分片上传。
+ * 初始化时按文件总大小预分配临时文件，每个分片按编号直接写到自己的偏移位置，
+ * 分片可以乱序、并行上传，提交时只需校验是否齐全并改名，没有合并步骤。
+ * 分片写入持有会话的读锁，提交、取消和过期清理持有写锁，通道不会在写入过程中被关闭。
+ * @author crc
+ */
+public class ChunkedUpload {
+
+    // 分片最小、最大尺寸
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    // 分片临时文件所在目录，与目标文件位于同一文件系统，提交时可以原子改名
+    private static final Path CHUNK_DIR = Paths.get(constant.BaseUrl, ".chunks");
+
+    private static final Map<String, Session> SESSIONS = new ConcurrentHashMap<>();
+
+    static {
+        // 会话只保存在内存中，重启前遗留的临时文件不会再被提交
+        try {
+            Files.createDirectories(CHUNK_DIR);
+            try (Stream<Path> files = Files.list(CHUNK_DIR)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".part"))
+                        .forEach(file -> {
+                            try {
+                                Files.deleteIfExists(file);
+                            } catch (IOException ignored) {
+                                // 删除失败留到下次启动
+                            }
+                        });
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        ScheduledExecutorService scheduler =
+                Executors.newSingleThreadScheduledExecutor(Workers.daemonThreads("chunked-upload-expire"));
+        scheduler.scheduleWithFixedDelay(ChunkedUpload::expireSessions, constant.ChunkSessionSweepInterval,
+                constant.ChunkSessionSweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 创建上传会话并预分配文件。
+     * @param fileName 最终保存的文件名
+     * @param size 文件总大小
+     * @param chunkSize 分片大小
+     * @return 上传会话
+     */
+    public static Session init(String fileName, long size, int chunkSize) throws IOException {
+        if (size <= 0 || size > constant.MaxFileSize) {
+            throw new IllegalArgumentException("文件大小必须在 1 字节到 512MB 之间");
+        }
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("分片大小必须在 64KB 到 64MB 之间");
+        }
+        Path target = FileTransfer.resolve(constant.BaseUrl, fileName);
+        expireSessions();
+
+        Files.createDirectories(CHUNK_DIR);
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        Path partFile = CHUNK_DIR.resolve(uploadId + ".part");
+        try (RandomAccessFile raf = new RandomAccessFile(partFile.toFile(), "rw")) {
+            raf.setLength(size);
+        }
+
+        Session session = new Session(uploadId, target, partFile, size, chunkSize);
+        SESSIONS.put(uploadId, session);
+        return session;
+    }
+
+    /**
+     * 查询上传会话。
+     * @param uploadId 会话编号
+     * @return 上传会话
+     */
+    public static Session get(String uploadId) {
+        Session session = SESSIONS.get(uploadId);
+        if (session == null) {
+            throw new NoSuchElementException("上传会话不存在或已过期: " + uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * 写入一个分片，分片内容直接写到预分配文件中对应的偏移位置。
+     * @param uploadId 会话编号
+     * @param index 分片编号，从0开始
+     * @param in 分片内容
+     * @return 写入的字节数
+     * @throws IllegalStateException 会话已经提交或取消
+     */
+    public static long writeChunk(String uploadId, int index, InputStream in) throws IOException {
+        Session session = get(uploadId);
+        if (index < 0 || index >= session.chunkCount) {
+            throw new IllegalArgumentException("分片编号超出范围: " + index);
+        }
+        long offset = (long) index * session.chunkSize;
+        long expected = session.chunkLength(index);
+
+        session.lock.readLock().lock();
+        try {
+            // 重传会覆盖原内容，写入完成前这个分片不算已收到，中途失败时不会提交新旧混合的数据
+            FileChannel channel = session.channel();
+            session.beginWrite(index);
+            boolean complete = false;
+            try {
+                long written = FileTransfer.receiveAt(in, channel, offset, expected);
+                if (written != expected) {
+                    throw new IllegalArgumentException("分片 " + index + " 大小不正确，期望 " + expected + " 字节，实际 " + written + " 字节");
+                }
+                complete = true;
+                return written;
+            } finally {
+                session.endWrite(index, complete);
+            }
+        } finally {
+            session.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 提交上传：所有分片到齐后把预分配文件移动到最终位置。
+     * @param uploadId 会话编号
+     * @return 最终文件路径
+     */
+    public static Path commit(String uploadId) throws IOException {
+        return commit(uploadId, get(uploadId).target);
+    }
+
+    /**
+     * 提交上传并把文件移动到指定位置，例如内容寻址存储的临时文件。
+     * @param uploadId 会话编号
+     * @param destination 文件移动到的位置
+     * @return 文件路径，即 destination
+     * @throws IllegalStateException 分片不齐全、有分片正在写入或会话已经提交
+     */
+    public static Path commit(String uploadId, Path destination) throws IOException {
+        Session session = get(uploadId);
+        if (!session.lock.writeLock().tryLock()) {
+            throw new IllegalStateException("有分片正在写入，请等待写入完成后再提交");
+        }
+        try {
+            if (session.closed) {
+                throw new IllegalStateException("上传会话已提交或已取消: " + uploadId);
+            }
+            List<Integer> missing = session.missingChunks();
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException("还有 " + missing.size() + " 个分片未上传");
+            }
+            session.close(true);
+            Files.move(session.partFile, destination,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            FileMetaCache.invalidate(destination);
+            SESSIONS.remove(uploadId);
+        } finally {
+            session.lock.writeLock().unlock();
+        }
+        return destination;
+    }
+
+    /**
+     * 放弃上传并删除已写入的数据，正在写入的分片完成后才删除。
+     * @param uploadId 会话编号
+     */
+    public static void abort(String uploadId) throws IOException {
+        Session session = SESSIONS.remove(uploadId);
+        if (session != null) {
+            session.lock.writeLock().lock();
+            try {
+                discard(session);
+            } finally {
+                session.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // 清理长时间没有分片到达的会话，正在写入分片的会话不清理
+    private static void expireSessions() {
+        long deadline = System.currentTimeMillis() - constant.ChunkSessionTimeout;
+        SESSIONS.values().removeIf(session -> {
+            if (session.lastActive > deadline || !session.lock.writeLock().tryLock()) {
+                return false;
+            }
+            try {
+                discard(session);
+            } catch (IOException ignored) {
+                // 临时文件删除失败不影响其它会话
+            } finally {
+                session.lock.writeLock().unlock();
+            }
+            return true;
+        });
+    }
+
+    // 调用方持有会话的写锁
+    private static void discard(Session session) throws IOException {
+        if (!session.closed) {
+            session.close(false);
+            Files.deleteIfExists(session.partFile);
+        }
+    }
+
+
+    /**
+     * 一次分片上传的会话状态。
+     */
+    public static class Session {
+        private final String uploadId;
+        private final Path target;
+        private final Path partFile;
+        private final long size;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final BitSet received;
+        // 每个分片正在进行的写入数，以及这些写入中是否有失败的
+        private final int[] writers;
+        private final BitSet failed;
+        // 写分片时持有读锁，关闭通道时持有写锁
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private FileChannel channel;
+        // 已经提交或取消，通道不再打开
+        private volatile boolean closed;
+        private volatile long lastActive;
+
+        Session(String uploadId, Path target, Path partFile, long size, int chunkSize) {
+            this.uploadId = uploadId;
+            this.target = target;
+            this.partFile = partFile;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            this.received = new BitSet(chunkCount);
+            this.writers = new int[chunkCount];
+            this.failed = new BitSet(chunkCount);
+            this.lastActive = System.currentTimeMillis();
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        public String getFileName() {
+            return target.getFileName().toString();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * @return 已收到的分片数量
+         */
+        public synchronized int receivedCount() {
+            return received.cardinality();
+        }
+
+        /**
+         * @return 尚未收到的分片编号
+         */
+        public synchronized List<Integer> missingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return missing;
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, size - (long) index * chunkSize);
+        }
+
+        // 所有分片共用一个通道，定位写不依赖通道的当前位置，可以并发写入；调用方持有读锁
+        synchronized FileChannel channel() throws IOException {
+            if (closed) {
+                throw new IllegalStateException("上传会话已提交或已取消: " + uploadId);
+            }
+            if (channel == null) {
+                if (!Files.exists(partFile)) {
+                    throw new NoSuchElementException("上传会话不存在或已过期: " + uploadId);
+                }
+                channel = FileChannel.open(partFile, StandardOpenOption.WRITE);
+            }
+            lastActive = System.currentTimeMillis();
+            return channel;
+        }
+
+        synchronized void beginWrite(int index) {
+            received.clear(index);
+            writers[index]++;
+            lastActive = System.currentTimeMillis();
+        }
+
+        // 同一分片的多个写入重叠时，最后一个结束的写入在全部成功时才把分片标记为已收到
+        synchronized void endWrite(int index, boolean complete) {
+            if (!complete) {
+                failed.set(index);
+            }
+            if (--writers[index] == 0) {
+                if (!failed.get(index)) {
+                    received.set(index);
+                }
+                failed.clear(index);
+            }
+            lastActive = System.currentTimeMillis();
+        }
+
+        synchronized void close(boolean force) throws IOException {
+            closed = true;
+            if (channel != null) {
+                if (force) {
+                    channel.force(true);
+                }
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
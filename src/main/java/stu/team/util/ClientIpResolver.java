@@ -0,0 +1,331 @@
+package stu.team.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import stu.team.constant.constant;
+
+/**
+ * 解析请求的真实客户端地址。
+ * 只有直接连接的地址属于 constant.TrustedProxies 时才读取 Forwarded / X-Forwarded-For，
+ * 从右向左跳过可信代理，第一个不可信的地址即为客户端地址，防止客户端伪造请求头。
+ * 可信地址段在启动时编译成网络号和掩码，匹配时逐字符解析，不使用正则表达式，也不创建中间字符串。
+ * @author crc
+ */
+public class ClientIpResolver {
+
+    /**
+     * 解析结果保存在这个请求属性中，同一请求内再次调用不重复解析。
+     */
+    public static final String ATTRIBUTE = ClientIpResolver.class.getName() + ".clientIp";
+
+    private static final int[] V4_NETWORKS;
+    private static final int[] V4_MASKS;
+    private static final long[] V6_NETWORKS;
+    private static final long[] V6_MASKS;
+
+    static {
+        int v4 = 0;
+        int v6 = 0;
+        for (String cidr : constant.TrustedProxies) {
+            if (cidr.indexOf(':') >= 0) {
+                v6++;
+            } else {
+                v4++;
+            }
+        }
+        V4_NETWORKS = new int[v4];
+        V4_MASKS = new int[v4];
+        V6_NETWORKS = new long[v6 * 2];
+        V6_MASKS = new long[v6 * 2];
+
+        v4 = 0;
+        v6 = 0;
+        for (String cidr : constant.TrustedProxies) {
+            int slash = cidr.indexOf('/');
+            int end = slash < 0 ? cidr.length() : slash;
+            if (cidr.indexOf(':') >= 0) {
+                int prefix = slash < 0 ? 128 : Integer.parseInt(cidr.substring(slash + 1));
+                long high = parseV6(cidr, 0, end, true);
+                long low = parseV6(cidr, 0, end, false);
+                if (high == -1 && low == -1 || prefix < 0 || prefix > 128) {
+                    throw new IllegalArgumentException("非法的可信代理地址段: " + cidr);
+                }
+                V6_MASKS[v6] = prefix == 0 ? 0 : prefix >= 64 ? -1L : -1L << (64 - prefix);
+                V6_MASKS[v6 + 1] = prefix <= 64 ? 0 : prefix == 128 ? -1L : -1L << (128 - prefix);
+                V6_NETWORKS[v6] = high & V6_MASKS[v6];
+                V6_NETWORKS[v6 + 1] = low & V6_MASKS[v6 + 1];
+                v6 += 2;
+            } else {
+                int prefix = slash < 0 ? 32 : Integer.parseInt(cidr.substring(slash + 1));
+                long address = parseV4(cidr, 0, end);
+                if (address < 0 || prefix < 0 || prefix > 32) {
+                    throw new IllegalArgumentException("非法的可信代理地址段: " + cidr);
+                }
+                V4_MASKS[v4] = prefix == 0 ? 0 : -1 << (32 - prefix);
+                V4_NETWORKS[v4] = (int) address & V4_MASKS[v4];
+                v4++;
+            }
+        }
+    }
+
+    /**
+     * 解析请求的客户端地址，结果缓存在请求属性 ATTRIBUTE 中。
+     * @param request HTTP请求
+     * @return 客户端地址
+     */
+    public static String resolve(HttpServletRequest request) {
+        Object cached = request.getAttribute(ATTRIBUTE);
+        if (cached != null) {
+            return (String) cached;
+        }
+        String ip = resolve(request.getRemoteAddr(), request.getHeader("Forwarded"),
+                request.getHeader("X-Forwarded-For"));
+        request.setAttribute(ATTRIBUTE, ip);
+        return ip;
+    }
+
+    /**
+     * 根据直接连接的地址和转发请求头解析客户端地址。Forwarded 优先于 X-Forwarded-For。
+     * @param remoteAddr 直接连接的地址
+     * @param forwarded Forwarded 请求头，可以为null
+     * @param forwardedFor X-Forwarded-For 请求头，可以为null
+     * @return 客户端地址
+     */
+    public static String resolve(String remoteAddr, String forwarded, String forwardedFor) {
+        if (remoteAddr == null || !isTrusted(remoteAddr, 0, remoteAddr.length())) {
+            return remoteAddr;
+        }
+        if (forwarded != null && !forwarded.isEmpty()) {
+            return walk(forwarded, true, remoteAddr);
+        }
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            return walk(forwardedFor, false, remoteAddr);
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 判断地址是否属于可信代理。
+     * @param address IPv4 或 IPv6 地址
+     */
+    public static boolean isTrusted(CharSequence address, int from, int to) {
+        long v4 = parseV4(address, from, to);
+        if (v4 >= 0) {
+            for (int i = 0; i < V4_NETWORKS.length; i++) {
+                if (((int) v4 & V4_MASKS[i]) == V4_NETWORKS[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (V6_NETWORKS.length == 0) {
+            return false;
+        }
+        long high = parseV6(address, from, to, true);
+        long low = parseV6(address, from, to, false);
+        if (high == -1 && low == -1) {
+            return false;
+        }
+        for (int i = 0; i < V6_NETWORKS.length; i += 2) {
+            if ((high & V6_MASKS[i]) == V6_NETWORKS[i] && (low & V6_MASKS[i + 1]) == V6_NETWORKS[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 从右向左遍历逗号分隔的各跳地址，跳过可信代理；遇到无法解析的值时返回最后一个可信代理
+    private static String walk(String header, boolean forwarded, String remoteAddr) {
+        int end = header.length();
+        int lastFrom = -1;
+        int lastTo = -1;
+        while (end > 0) {
+            int comma = header.lastIndexOf(',', end - 1);
+            int from = comma + 1;
+            int to = end;
+            end = comma < 0 ? 0 : comma;
+
+            if (forwarded) {
+                // Forwarded: for=192.0.2.60;proto=http;by=203.0.113.43
+                int key = indexOfFor(header, from, to);
+                if (key < 0) {
+                    break;
+                }
+                from = key + 4;
+                int semicolon = indexOf(header, ';', from, to);
+                if (semicolon >= 0) {
+                    to = semicolon;
+                }
+            }
+
+            // 去掉空白、引号、方括号和端口
+            while (from < to && header.charAt(from) == ' ') {
+                from++;
+            }
+            while (to > from && header.charAt(to - 1) == ' ') {
+                to--;
+            }
+            if (to - from >= 2 && header.charAt(from) == '"' && header.charAt(to - 1) == '"') {
+                from++;
+                to--;
+            }
+            if (from < to && header.charAt(from) == '[') {
+                int bracket = indexOf(header, ']', from, to);
+                if (bracket < 0) {
+                    break;
+                }
+                from++;
+                to = bracket;
+            } else {
+                int colon = indexOf(header, ':', from, to);
+                if (colon >= 0 && indexOf(header, ':', colon + 1, to) < 0) {
+                    to = colon;
+                }
+            }
+
+            if (parseV4(header, from, to) < 0
+                    && parseV6(header, from, to, true) == -1 && parseV6(header, from, to, false) == -1) {
+                break;
+            }
+            lastFrom = from;
+            lastTo = to;
+            if (!isTrusted(header, from, to)) {
+                break;
+            }
+        }
+        return lastFrom < 0 ? remoteAddr : header.substring(lastFrom, lastTo);
+    }
+
+    private static int indexOfFor(String header, int from, int to) {
+        for (int i = from; i + 4 <= to; i++) {
+            if ((header.charAt(i) | 0x20) == 'f' && (header.charAt(i + 1) | 0x20) == 'o'
+                    && (header.charAt(i + 2) | 0x20) == 'r' && header.charAt(i + 3) == '='
+                    && (i == from || header.charAt(i - 1) == ';' || header.charAt(i - 1) == ' ')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        c |= 0x20;
+        return c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+    }
+
+    /**
+     * 解析点分十进制的IPv4地址。
+     * @return 数值形式的地址，格式不正确时返回-1
+     */
+    public static long parseV4(CharSequence s, int from, int to) {
+        long address = 0;
+        int part = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && part < 3) {
+                address = address << 8 | value;
+                part++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (part != 3 || value < 0) {
+            return -1;
+        }
+        return address << 8 | value;
+    }
+
+    /**
+     * 解析IPv6地址的高64位或低64位，支持 "::" 缩写，不支持内嵌IPv4和区域编号。
+     * 为了不分配数组，高低两部分分两次解析。
+     * @return 对应的64位；格式不正确时高低两部分都返回-1（全1的地址不会出现在实际请求中）
+     */
+    public static long parseV6(CharSequence s, int from, int to, boolean high) {
+        // 以两个long表示128位整数，head 为 "::" 之前的部分，tail 为之后的部分
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headGroups = 0;
+        int tailGroups = 0;
+        boolean compressed = false;
+
+        int i = from;
+        if (to - from >= 2 && s.charAt(from) == ':' && s.charAt(from + 1) == ':') {
+            compressed = true;
+            i += 2;
+        }
+        while (i < to) {
+            int group = 0;
+            int digits = 0;
+            while (i < to && digits < 5) {
+                int hex = hexValue(s.charAt(i));
+                if (hex < 0) {
+                    break;
+                }
+                group = group << 4 | hex;
+                digits++;
+                i++;
+            }
+            if (digits == 0 || digits > 4) {
+                return -1;
+            }
+            if (compressed) {
+                tailHigh = tailHigh << 16 | tailLow >>> 48;
+                tailLow = tailLow << 16 | group;
+                tailGroups++;
+            } else {
+                headHigh = headHigh << 16 | headLow >>> 48;
+                headLow = headLow << 16 | group;
+                headGroups++;
+            }
+            if (headGroups + tailGroups > 8) {
+                return -1;
+            }
+            if (i == to) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return -1;
+            }
+            i++;
+            if (i < to && s.charAt(i) == ':') {
+                if (compressed) {
+                    return -1;
+                }
+                compressed = true;
+                i++;
+            } else if (i == to) {
+                return -1;
+            }
+        }
+
+        int groups = headGroups + tailGroups;
+        if (compressed ? groups > 7 : groups != 8) {
+            return -1;
+        }
+        // head 左移到高位，与 tail 合并
+        for (int n = headGroups; n < 8; n++) {
+            headHigh = headHigh << 16 | headLow >>> 48;
+            headLow = headLow << 16;
+        }
+        return high ? headHigh | tailHigh : headLow | tailLow;
+    }
+}
@@ -0,0 +1,229 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按内容寻址、自动去重的文件存储。
+ * 文件内容以 SHA-256 为键保存在 .blobs 目录下，相同内容只保存一份；
+ * 文件名只是指向内容的引用，记录在追加写入的 .names 日志中，启动时加载到内存。
+ * 同名的普通文件被非去重上传写入后调用 {@link #forget(Path)} 删除引用，之后读取的是普通文件。
+ * @author crc
+ */
+public class ContentStore {
+
+    private static final Path BASE_DIR = Paths.get(constant.BaseUrl).toAbsolutePath().normalize();
+    private static final Path BLOB_DIR = BASE_DIR.resolve(".blobs");
+    private static final Path NAME_LOG = BASE_DIR.resolve(".names");
+
+    // 文件名 -> SHA-256
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            load();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 流式保存上传内容：写入的同时计算摘要，内容已存在时丢弃本次写入的数据。
+     * @param in 输入流
+     * @param target 文件名对应的路径（由 FileTransfer.resolve 得到）
+     * @param overwrite 文件名已指向其它内容时是否覆盖
+     * @return 保存结果
+     */
+    public static Stored store(InputStream in, Path target, boolean overwrite)
+            throws IOException, NoSuchAlgorithmException {
+        String name = nameOf(target);
+        Path temp = newTempFile();
+        FileTransfer.UploadResult result = FileTransfer.receive(in, temp, constant.MaxFileSize,
+                DigestIndex.ALGORITHMS);
+        return adopt(temp, name, result.getDigests(), overwrite);
+    }
+
+    /**
+     * 把已经写好的文件纳入存储，例如分片上传提交后的文件。
+     * @param file 已写好的文件，必须位于 newTempFile 返回的目录中
+     * @param target 文件名对应的路径
+     * @param digests 文件的摘要，必须包含 SHA-256
+     * @param overwrite 文件名已指向其它内容时是否覆盖
+     * @return 保存结果
+     */
+    public static Stored adopt(Path file, Path target, Map<String, String> digests, boolean overwrite)
+            throws IOException {
+        return adopt(file, nameOf(target), digests, overwrite);
+    }
+
+    /**
+     * 查询文件名指向的内容。
+     * @param target 文件名对应的路径
+     * @return 内容文件路径；文件名不在存储中时返回null
+     */
+    public static Path lookup(Path target) {
+        String hash = NAMES.get(nameOf(target));
+        return hash == null ? null : blobPath(hash);
+    }
+
+    /**
+     * 删除文件名的引用，文件名之后由同名的普通文件提供。内容文件保留，其它文件名可能仍在引用它。
+     * 非去重方式写入文件后调用，否则读取时仍然优先返回之前去重上传的内容。
+     * @param target 文件名对应的路径
+     */
+    public static void forget(Path target) throws IOException {
+        String name = nameOf(target);
+        if (!NAMES.containsKey(name)) {
+            return;
+        }
+        synchronized (ContentStore.class) {
+            if (NAMES.remove(name) != null) {
+                append(name, "");
+            }
+        }
+    }
+
+    /**
+     * @return 一个新的临时文件路径，与内容文件位于同一文件系统，可以原子改名
+     */
+    public static Path newTempFile() throws IOException {
+        Files.createDirectories(BLOB_DIR);
+        return BLOB_DIR.resolve("upload-" + UUID.randomUUID() + ".tmp");
+    }
+
+    private static Stored adopt(Path file, String name, Map<String, String> digests, boolean overwrite)
+            throws IOException {
+        String hash = digests.get("SHA-256").toLowerCase();
+        Path blob = blobPath(hash);
+        boolean deduplicated;
+        synchronized (ContentStore.class) {
+            String previous = NAMES.get(name);
+            if (previous != null && !previous.equals(hash) && !overwrite) {
+                Files.deleteIfExists(file);
+                throw new IllegalStateException("文件名已被其它内容占用: " + name);
+            }
+
+            deduplicated = Files.exists(blob);
+            if (deduplicated) {
+                Files.delete(file);
+            } else {
+                Files.createDirectories(blob.getParent());
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                Files.move(file, blob, StandardCopyOption.ATOMIC_MOVE);
+                DigestIndex.record(blob, size, lastModified, digests);
+            }
+
+            if (!hash.equals(previous)) {
+                append(name, hash);
+                NAMES.put(name, hash);
+            }
+        }
+        return new Stored(name, hash, blob, deduplicated);
+    }
+
+    // 文件名统一使用相对于 BaseUrl 的路径；日志按行、以制表符分隔，文件名中不允许出现控制字符
+    private static String nameOf(Path target) {
+        String name = BASE_DIR.relativize(target.toAbsolutePath().normalize()).toString();
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isISOControl(name.charAt(i))) {
+                throw new IllegalArgumentException("非法的文件名: " + name);
+            }
+        }
+        return name;
+    }
+
+    private static Path blobPath(String hash) {
+        return BLOB_DIR.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void append(String name, String hash) throws IOException {
+        Files.writeString(NAME_LOG, name + '\t' + hash + '\n', StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 加载文件名日志，后出现的记录覆盖先出现的记录，摘要为空的记录表示删除引用；被覆盖的记录较多时重写日志。
+     */
+    private static void load() throws IOException {
+        if (!Files.exists(NAME_LOG)) {
+            return;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(NAME_LOG, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                if (tab > 0) {
+                    if (tab == line.length() - 1) {
+                        NAMES.remove(line.substring(0, tab));
+                    } else {
+                        NAMES.put(line.substring(0, tab), line.substring(tab + 1));
+                    }
+                    lines++;
+                }
+            }
+        }
+
+        if (lines > NAMES.size() * 2 + 1024) {
+            Path temp = BASE_DIR.resolve(".names.tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : NAMES.entrySet()) {
+                    writer.write(entry.getKey() + '\t' + entry.getValue() + '\n');
+                }
+            }
+            Files.move(temp, NAME_LOG, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+
+    /**
+     * 一次保存的结果。
+     */
+    public static class Stored {
+        private final String name;
+        private final String hash;
+        private final Path path;
+        private final boolean deduplicated;
+
+        public Stored(String name, String hash, Path path, boolean deduplicated) {
+            this.name = name;
+            this.hash = hash;
+            this.path = path;
+            this.deduplicated = deduplicated;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return 相同内容是否已经存在，本次上传没有占用新的存储空间
+         */
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+    }
+}
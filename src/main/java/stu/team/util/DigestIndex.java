@@ -0,0 +1,146 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * constant.BaseUrl 下文件的摘要索引。
+ * 每个文件的摘要保存在 .digests 目录下的同名旁路文件中，记录计算时文件的大小和修改时间，
+ * 文件被替换后索引自动视为过期。上传时顺带写入，查询时不需要读取文件内容。
+ * @author crc
+ */
+public class DigestIndex {
+
+    // 上传时计算并记录的摘要算法
+    public static final String[] ALGORITHMS = {"MD5", "SHA-256", "SHA-3"};
+
+    private static final Path BASE_DIR = Paths.get(constant.BaseUrl).toAbsolutePath().normalize();
+    private static final Path INDEX_DIR = BASE_DIR.resolve(".digests");
+
+    private static final LruCache<Path, Entry> CACHE = new LruCache<>(4096);
+    private static final Entry MISSING = new Entry(-1, -1, Map.of());
+
+    /**
+     * 记录文件的摘要。大小和修改时间由调用方在计算摘要时取得（例如上传时从改名前的临时文件读取），
+     * 而不是记录时重新读取，文件在这期间被并发替换时索引会因为不一致而失效，不会把旧摘要记到新文件上。
+     * @param file 文件路径
+     * @param size 计算摘要的内容的大小
+     * @param lastModified 计算摘要的内容的修改时间
+     * @param digests 算法名称 -> 摘要，应包含 ALGORITHMS 中的全部算法
+     */
+    public static void record(Path file, long size, long lastModified, Map<String, String> digests)
+            throws IOException {
+        Entry entry = new Entry(size, lastModified, new LinkedHashMap<>(digests));
+
+        Properties properties = new Properties();
+        properties.setProperty("size", String.valueOf(entry.size));
+        properties.setProperty("lastModified", String.valueOf(entry.lastModified));
+        entry.digests.forEach(properties::setProperty);
+
+        Path sidecar = sidecar(file);
+        Files.createDirectories(sidecar.getParent());
+        Path temp = Files.createTempFile(sidecar.getParent(), ".digest", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        CACHE.put(file, entry);
+    }
+
+    /**
+     * 查询索引中的摘要，不读取文件内容。
+     * @param file 文件路径
+     * @param meta 文件当前的元数据
+     * @return 算法名称 -> 摘要；没有索引或索引已过期时返回null
+     */
+    public static Map<String, String> lookup(Path file, FileMeta meta) throws IOException {
+        Entry entry = CACHE.get(file);
+        if (entry == null) {
+            // 没有索引的文件也缓存下来，旁路文件只由 record 写入，届时会覆盖这个条目
+            Entry loaded = load(file);
+            entry = CACHE.putIfAbsent(file, loaded == null ? MISSING : loaded);
+        }
+        if (entry == MISSING || entry.size != meta.getSize() || entry.lastModified != meta.getLastModified()) {
+            return null;
+        }
+        return entry.digests;
+    }
+
+    /**
+     * 查询索引中的摘要，没有索引时读取一次文件计算并写入索引。
+     * @param file 文件路径
+     * @param meta 文件当前的元数据
+     * @return 算法名称 -> 摘要
+     */
+    public static Map<String, String> lookupOrCompute(Path file, FileMeta meta) throws IOException {
+        Map<String, String> digests = lookup(file, meta);
+        if (digests != null) {
+            return digests;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            digests = StreamHasher.hash(in, meta.getSize() > constant.TransferBufferSize, ALGORITHMS);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        record(file, meta.getSize(), meta.getLastModified(), digests);
+        return digests;
+    }
+
+    private static Entry load(Path file) throws IOException {
+        Path sidecar = sidecar(file);
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(sidecar)) {
+            properties.load(in);
+        }
+        Map<String, String> digests = new LinkedHashMap<>();
+        for (String algorithm : ALGORITHMS) {
+            String digest = properties.getProperty(algorithm);
+            if (digest == null) {
+                return null;
+            }
+            digests.put(algorithm, digest);
+        }
+        try {
+            return new Entry(Long.parseLong(properties.getProperty("size")),
+                    Long.parseLong(properties.getProperty("lastModified")), digests);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Path sidecar(Path file) {
+        Path relative = BASE_DIR.relativize(file.toAbsolutePath().normalize());
+        return INDEX_DIR.resolve(relative + ".digest");
+    }
+
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final Map<String, String> digests;
+
+        Entry(long size, long lastModified, Map<String, String> digests) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digests = digests;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package stu.team.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * 按行对比两个文件，以统一格式（unified diff）写出差异，适用于很大的日志和配置文件。
+ * 文件通过内存映射读取，不复制到堆中；每一行按内容哈希分配一个整数编号，相同的行编号相同，
+ * 之后只对比两个编号数组。对比前先去掉相同的开头和结尾，再去掉只在一个文件中出现的行（它们一定是差异），
+ * 剩下的部分用线性空间的 Myers 算法对比。差异很大时限制每次搜索的代价，结果仍然正确但不一定最短。
+ * 结果边生成边写出，堆内存占用约为每行几十个字节，与行的长度无关。
+ * @author crc
+ */
+public class FileDiff {
+
+    // 每次二分搜索的最大编辑距离，超过后按已搜索到的最远位置拆分
+    private static final int MAX_COST = 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 对比两个文件并写出统一格式的差异。没有差异时不写出任何内容。
+     * @param original 原文件
+     * @param compared 对比的文件
+     * @param originalLabel 差异中原文件的名称
+     * @param comparedLabel 差异中对比文件的名称
+     * @param context 每处差异前后显示的相同行数
+     * @param out 输出流
+     * @return 差异块（hunk）的数量
+     * @throws IllegalArgumentException 文件超过 2GB 或上下文行数为负数
+     */
+    public static int diff(Path original, Path compared, String originalLabel, String comparedLabel,
+                           int context, OutputStream out) throws IOException {
+        if (context < 0) {
+            throw new IllegalArgumentException("上下文行数不能为负数");
+        }
+        Interner interner = new Interner();
+        Lines a = Lines.read(original, interner);
+        Lines b = Lines.read(compared, interner);
+        boolean[] deleted = new boolean[a.count];
+        boolean[] inserted = new boolean[b.count];
+        new Myers(a.ids, b.ids, deleted, inserted, interner.size()).run();
+        return new UnifiedWriter(a, b, deleted, inserted, context,
+                new BufferedOutputStream(out, 1 << 16)).write(originalLabel, comparedLabel);
+    }
+
+
+    /**
+     * 文件中的行：每行在映射中的起止位置和编号。
+     */
+    private static class Lines {
+        private final MappedByteBuffer data;
+        // 第 i 行为 data[starts[i], starts[i + 1])，包含行尾的换行符
+        private final int[] starts;
+        private final int[] ids;
+        private final int count;
+        // 最后一行是否以换行符结尾
+        private final boolean newlineAtEnd;
+
+        private Lines(MappedByteBuffer data, int[] starts, int[] ids, int count) {
+            this.data = data;
+            this.starts = starts;
+            this.ids = ids;
+            this.count = count;
+            this.newlineAtEnd = count == 0 || data.get(starts[count] - 1) == '\n';
+        }
+
+        static Lines read(Path path, Interner interner) throws IOException {
+            MappedByteBuffer data;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("文件超过 2GB: " + path.getFileName());
+                }
+                // 映射在通道关闭后仍然有效
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            int size = data.capacity();
+            int[] starts = new int[1024];
+            int[] ids = new int[1024];
+            int count = 0;
+            int start = 0;
+            long hash = FNV_OFFSET;
+            for (int i = 0; i < size; i++) {
+                byte c = data.get(i);
+                if (c != '\n' && i + 1 < size) {
+                    hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+                    continue;
+                }
+                if (c != '\n') {
+                    hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+                }
+                if (count + 2 > starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                // 行的编号由内容（不含换行符）和是否以换行符结尾决定，文件末尾是否有换行符的变化也算作差异
+                boolean terminated = c == '\n';
+                int end = terminated ? i : i + 1;
+                ids[count] = interner.intern(hash, data, start, end - start, terminated);
+                starts[count++] = start;
+                start = i + 1;
+                hash = FNV_OFFSET;
+            }
+            starts[count] = size;
+            return new Lines(data, starts, ids, count);
+        }
+
+        // 不含换行符的行长度
+        int length(int line) {
+            int end = starts[line + 1];
+            return end > starts[line] && data.get(end - 1) == '\n' ? end - 1 - starts[line] : end - starts[line];
+        }
+    }
+
+
+    /**
+     * 行内容到编号的哈希表（开放寻址），两个文件共用，相同内容的行得到相同编号。
+     * 每个编号记录第一次出现的位置，哈希相同时逐字节比较确认。
+     */
+    private static class Interner {
+        private int[] slots = new int[1 << 12];
+        private long[] hashes = new long[1 << 11];
+        private MappedByteBuffer[] sources = new MappedByteBuffer[1 << 11];
+        private int[] offsets = new int[1 << 11];
+        // 行的长度，没有换行符的行记为 -长度-1，与内容相同但有换行符的行区分开
+        private int[] lengths = new int[1 << 11];
+        private int size;
+
+        int intern(long hash, MappedByteBuffer data, int offset, int length, boolean terminated) {
+            int key = terminated ? length : -length - 1;
+            int mask = slots.length - 1;
+            int index = (int) (hash ^ hash >>> 32) & mask;
+            while (slots[index] != 0) {
+                int id = slots[index] - 1;
+                if (hashes[id] == hash && lengths[id] == key
+                        && sources[id].slice(offsets[id], length).equals(data.slice(offset, length))) {
+                    return id;
+                }
+                index = (index + 1) & mask;
+            }
+            if (size == hashes.length) {
+                int capacity = size * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                sources = Arrays.copyOf(sources, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            int id = size++;
+            hashes[id] = hash;
+            sources[id] = data;
+            offsets[id] = offset;
+            lengths[id] = key;
+            slots[index] = id + 1;
+            // 装载因子保持在 1/2 以下
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            int[] grown = new int[slots.length * 2];
+            int mask = grown.length - 1;
+            for (int id = 0; id < size; id++) {
+                int index = (int) (hashes[id] ^ hashes[id] >>> 32) & mask;
+                while (grown[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                grown[index] = id + 1;
+            }
+            slots = grown;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+
+    /**
+     * Myers 差异算法（线性空间，按中间蛇形拆分），结果标记在 deleted 和 inserted 中。
+     */
+    private static class Myers {
+        private final int[] a;
+        private final int[] b;
+        private final boolean[] deleted;
+        private final boolean[] inserted;
+        private final int idCount;
+
+        Myers(int[] a, int[] b, boolean[] deleted, boolean[] inserted, int idCount) {
+            this.a = a;
+            this.b = b;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.idCount = idCount;
+        }
+
+        void run() {
+            int aLo = 0, aHi = deleted.length, bLo = 0, bHi = inserted.length;
+            // 去掉相同的开头和结尾
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+
+            // 只在一个文件中出现的行不可能匹配，直接标记为差异，其余的行组成紧凑的数组再对比
+            int[] countA = new int[idCount];
+            int[] countB = new int[idCount];
+            for (int i = aLo; i < aHi; i++) {
+                countA[a[i]]++;
+            }
+            for (int j = bLo; j < bHi; j++) {
+                countB[b[j]]++;
+            }
+            int[] indexA = new int[aHi - aLo];
+            int[] indexB = new int[bHi - bLo];
+            int n = 0, m = 0;
+            for (int i = aLo; i < aHi; i++) {
+                if (countB[a[i]] == 0) {
+                    deleted[i] = true;
+                } else {
+                    indexA[n++] = i;
+                }
+            }
+            for (int j = bLo; j < bHi; j++) {
+                if (countA[b[j]] == 0) {
+                    inserted[j] = true;
+                } else {
+                    indexB[m++] = j;
+                }
+            }
+            countA = null;
+            countB = null;
+            int[] x = new int[n];
+            int[] y = new int[m];
+            for (int i = 0; i < n; i++) {
+                x[i] = a[indexA[i]];
+            }
+            for (int j = 0; j < m; j++) {
+                y[j] = b[indexB[j]];
+            }
+
+            new Compact(x, y, indexA, indexB).run();
+        }
+
+
+        private class Compact {
+            private final int[] x;
+            private final int[] y;
+            private final int[] indexX;
+            private final int[] indexY;
+            private final int[] forward = new int[2 * MAX_COST + 4];
+            private final int[] backward = new int[2 * MAX_COST + 4];
+
+            Compact(int[] x, int[] y, int[] indexX, int[] indexY) {
+                this.x = x;
+                this.y = y;
+                this.indexX = indexX;
+                this.indexY = indexY;
+            }
+
+            void run() {
+                // 用栈代替递归，子问题的处理顺序不影响结果
+                Deque<int[]> stack = new ArrayDeque<>();
+                stack.push(new int[]{0, x.length, 0, y.length});
+                while (!stack.isEmpty()) {
+                    int[] range = stack.pop();
+                    int xLo = range[0], xHi = range[1], yLo = range[2], yHi = range[3];
+                    while (xLo < xHi && yLo < yHi && x[xLo] == y[yLo]) {
+                        xLo++;
+                        yLo++;
+                    }
+                    while (xLo < xHi && yLo < yHi && x[xHi - 1] == y[yHi - 1]) {
+                        xHi--;
+                        yHi--;
+                    }
+                    if (xLo == xHi || yLo == yHi) {
+                        mark(xLo, xHi, yLo, yHi);
+                        continue;
+                    }
+                    int[] split = bisect(xLo, xHi, yLo, yHi);
+                    if (split == null) {
+                        mark(xLo, xHi, yLo, yHi);
+                        continue;
+                    }
+                    stack.push(new int[]{xLo, split[0], yLo, split[1]});
+                    stack.push(new int[]{split[0], xHi, split[1], yHi});
+                }
+            }
+
+            private void mark(int xLo, int xHi, int yLo, int yHi) {
+                for (int i = xLo; i < xHi; i++) {
+                    deleted[indexX[i]] = true;
+                }
+                for (int j = yLo; j < yHi; j++) {
+                    inserted[indexY[j]] = true;
+                }
+            }
+
+            /**
+             * 同时从两端搜索，找到中间蛇形的位置作为拆分点。
+             * 编辑距离超过 MAX_COST 时返回正向搜索走得最远的位置；两个序列没有相同行时返回 null。
+             */
+            private int[] bisect(int xLo, int xHi, int yLo, int yHi) {
+                int n = xHi - xLo;
+                int m = yHi - yLo;
+                int maxD = Math.min((n + m + 1) / 2, MAX_COST);
+                int offset = maxD + 1;
+                int length = 2 * offset + 1;
+                Arrays.fill(forward, 0, length, -1);
+                Arrays.fill(backward, 0, length, -1);
+                forward[offset + 1] = 0;
+                backward[offset + 1] = 0;
+                int delta = n - m;
+                // delta 为奇数时正向搜索与反向路径重叠，否则反向搜索与正向路径重叠
+                boolean front = (delta & 1) != 0;
+                int kStartF = 0, kEndF = 0, kStartB = 0, kEndB = 0;
+                for (int d = 0; d < maxD; d++) {
+                    for (int k = -d + kStartF; k <= d - kEndF; k += 2) {
+                        int i = offset + k;
+                        int px = (k == -d || (k != d && forward[i - 1] < forward[i + 1])) ? forward[i + 1] : forward[i - 1] + 1;
+                        int py = px - k;
+                        while (px < n && py < m && x[xLo + px] == y[yLo + py]) {
+                            px++;
+                            py++;
+                        }
+                        forward[i] = px;
+                        if (px > n) {
+                            kEndF += 2;
+                        } else if (py > m) {
+                            kStartF += 2;
+                        } else if (front) {
+                            int j = offset + delta - k;
+                            if (j >= 0 && j < length && backward[j] != -1 && px >= n - backward[j]) {
+                                return new int[]{xLo + px, yLo + py};
+                            }
+                        }
+                    }
+                    for (int k = -d + kStartB; k <= d - kEndB; k += 2) {
+                        int i = offset + k;
+                        int px = (k == -d || (k != d && backward[i - 1] < backward[i + 1])) ? backward[i + 1] : backward[i - 1] + 1;
+                        int py = px - k;
+                        while (px < n && py < m && x[xHi - px - 1] == y[yHi - py - 1]) {
+                            px++;
+                            py++;
+                        }
+                        backward[i] = px;
+                        if (px > n) {
+                            kEndB += 2;
+                        } else if (py > m) {
+                            kStartB += 2;
+                        } else if (!front) {
+                            int j = offset + delta - k;
+                            if (j >= 0 && j < length && forward[j] != -1) {
+                                int fx = forward[j];
+                                int fy = fx - (j - offset);
+                                if (fx >= n - px) {
+                                    return new int[]{xLo + fx, yLo + fy};
+                                }
+                            }
+                        }
+                    }
+                }
+                if (maxD == (n + m + 1) / 2) {
+                    return null;
+                }
+                // 代价太大：取正向搜索中走得最远且仍在范围内的位置
+                int bestX = -1, bestY = -1;
+                for (int k = -maxD + 1; k <= maxD - 1; k++) {
+                    int px = forward[offset + k];
+                    int py = px - k;
+                    if (px >= 0 && px <= n && py >= 0 && py <= m && px + py > bestX + bestY
+                            && !(px == n && py == m)) {
+                        bestX = px;
+                        bestY = py;
+                    }
+                }
+                if (bestX < 0 || bestX + bestY == 0) {
+                    return null;
+                }
+                return new int[]{xLo + bestX, yLo + bestY};
+            }
+        }
+    }
+
+
+    /**
+     * 按统一格式写出差异，每次只保存一个差异块中各段的位置。
+     */
+    private static class UnifiedWriter {
+        private final Lines a;
+        private final Lines b;
+        private final boolean[] deleted;
+        private final boolean[] inserted;
+        private final int context;
+        private final OutputStream out;
+        private byte[] buffer = new byte[8192];
+
+        UnifiedWriter(Lines a, Lines b, boolean[] deleted, boolean[] inserted, int context, OutputStream out) {
+            this.a = a;
+            this.b = b;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            this.context = context;
+            this.out = out;
+        }
+
+        int write(String originalLabel, String comparedLabel) throws IOException {
+            int hunks = 0;
+            int i = 0, j = 0;
+            // 当前差异块中的修改：每个修改为 {原文件起点, 原文件终点, 对比文件起点, 对比文件终点}
+            int[] changes = new int[64];
+            int changeCount = 0;
+            while (true) {
+                // 找到下一处修改
+                while (i < a.count && j < b.count && !deleted[i] && !inserted[j]) {
+                    i++;
+                    j++;
+                }
+                boolean end = !(i < a.count && deleted[i]) && !(j < b.count && inserted[j]);
+                if (changeCount > 0) {
+                    int previousEndA = changes[changeCount * 4 - 3];
+                    // 与上一处修改之间的相同行超过两倍上下文时，先写出当前差异块
+                    if (end || i - previousEndA > 2 * context) {
+                        if (hunks == 0) {
+                            out.write(("--- " + label(originalLabel) + "\n+++ " + label(comparedLabel) + "\n")
+                                    .getBytes(StandardCharsets.UTF_8));
+                        }
+                        writeHunk(changes, changeCount);
+                        hunks++;
+                        changeCount = 0;
+                    }
+                }
+                if (end) {
+                    break;
+                }
+                int startA = i, startB = j;
+                while (i < a.count && deleted[i]) {
+                    i++;
+                }
+                while (j < b.count && inserted[j]) {
+                    j++;
+                }
+                if (changeCount * 4 + 4 > changes.length) {
+                    changes = Arrays.copyOf(changes, changes.length * 2);
+                }
+                changes[changeCount * 4] = startA;
+                changes[changeCount * 4 + 1] = i;
+                changes[changeCount * 4 + 2] = startB;
+                changes[changeCount * 4 + 3] = j;
+                changeCount++;
+            }
+            out.flush();
+            return hunks;
+        }
+
+        private void writeHunk(int[] changes, int count) throws IOException {
+            int firstA = Math.max(0, changes[0] - context);
+            int firstB = changes[2] - (changes[0] - firstA);
+            int lastA = Math.min(a.count, changes[count * 4 - 3] + context);
+            int lastB = changes[count * 4 - 1] + (lastA - changes[count * 4 - 3]);
+            out.write(("@@ -" + range(firstA, lastA - firstA) + " +" + range(firstB, lastB - firstB) + " @@\n")
+                    .getBytes(StandardCharsets.UTF_8));
+
+            int i = firstA;
+            for (int c = 0; c < count; c++) {
+                int startA = changes[c * 4], endA = changes[c * 4 + 1];
+                int startB = changes[c * 4 + 2], endB = changes[c * 4 + 3];
+                for (; i < startA; i++) {
+                    line(' ', a, i);
+                }
+                for (int k = startA; k < endA; k++) {
+                    line('-', a, k);
+                }
+                for (int k = startB; k < endB; k++) {
+                    line('+', b, k);
+                }
+                i = endA;
+            }
+            for (; i < lastA; i++) {
+                line(' ', a, i);
+            }
+        }
+
+        private void line(char prefix, Lines lines, int index) throws IOException {
+            int length = lines.length(index);
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            lines.data.get(lines.starts[index], buffer, 0, length);
+            out.write(prefix);
+            out.write(buffer, 0, length);
+            out.write('\n');
+            if (index == lines.count - 1 && !lines.newlineAtEnd) {
+                out.write("\\ No newline at end of file\n".getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        // 文件名中的换行符会破坏差异的格式
+        private static String label(String name) {
+            return name == null ? "" : name.replace('\n', ' ').replace('\r', ' ');
+        }
+
+        // 统一格式中的行范围：起始行号（从1开始，行数为0时为前一行）和行数
+        private static String range(int start, int count) {
+            return (count == 0 ? start : start + 1) + "," + count;
+        }
+    }
+}
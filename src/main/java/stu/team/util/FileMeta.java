@@ -0,0 +1,95 @@
+package stu.team.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 提供下载所需的文件元数据：内容类型、大小、修改时间和ETag。
+ * @author crc
+ */
+public class FileMeta {
+
+    private final Path path;
+    private final String contentType;
+    private final long size;
+    private final long lastModified;
+    private final String etag;
+
+    public FileMeta(Path path, String contentType, long size, long lastModified, String etag) {
+        this.path = path;
+        this.contentType = contentType;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = etag;
+    }
+
+    /**
+     * 读取文件属性并生成元数据，ETag由文件大小和修改时间组成。
+     * @param path 文件路径
+     * @return 文件元数据；文件不存在、不可读或是目录时返回null
+     */
+    public static FileMeta of(Path path) throws IOException {
+        if (!Files.isReadable(path)) {
+            return null;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        String contentType = contentTypeOf(path.getFileName().toString());
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        return new FileMeta(path, contentType, size, lastModified, etag);
+    }
+
+    /**
+     * 根据文件扩展名推断内容类型。
+     * @param fileName 文件名
+     * @return 内容类型，无法识别时为 application/octet-stream
+     */
+    public static String contentTypeOf(String fileName) {
+        return MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    /**
+     * 复制一份元数据并替换ETag，例如改用内容摘要作为强ETag。
+     * @param etag 新的ETag（含引号）
+     */
+    public FileMeta withEtag(String etag) {
+        return new FileMeta(path, contentType, size, lastModified, etag);
+    }
+
+    /**
+     * 复制一份元数据并替换内容类型，例如内容文件本身没有扩展名时按引用它的文件名推断。
+     * @param contentType 新的内容类型
+     */
+    public FileMeta withContentType(String contentType) {
+        return new FileMeta(path, contentType, size, lastModified, etag);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
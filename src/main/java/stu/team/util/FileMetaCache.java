@@ -0,0 +1,131 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件元数据的内存缓存，覆盖 constant.ImageUrl、constant.BaseUrl 和缩略图目录。
+ * 重复访问同一个文件时直接返回缓存的内容类型、大小、修改时间和ETag，不再产生文件系统调用；
+ * 后台线程通过 WatchService 监听目录变化，文件被创建、修改或删除时使对应条目失效。
+ * @author crc
+ */
+public class FileMetaCache {
+
+    private static final Map<Path, FileMeta> CACHE = new ConcurrentHashMap<>();
+
+    // 每次失效都会递增，用来发现读取属性期间发生的并发失效
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    // 已成功注册监听的目录，只有这些目录下的文件才会被缓存
+    private static final Set<Path> WATCHED = ConcurrentHashMap.newKeySet();
+
+    static {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            for (String dir : new String[]{constant.ImageUrl, constant.BaseUrl, constant.ThumbnailUrl}) {
+                Path path = Paths.get(dir).toAbsolutePath().normalize();
+                try {
+                    Files.createDirectories(path);
+                    path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    WATCHED.add(path);
+                } catch (IOException e) {
+                    System.out.println("无法监听目录，该目录下的文件元数据不做缓存: " + path + "   " + e);
+                }
+            }
+            Thread watcher = new Thread(() -> watch(watchService), "file-meta-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 获取文件元数据，优先读取缓存。
+     * @param path 规范化后的绝对路径
+     * @return 文件元数据；文件不存在或不可读时返回null
+     */
+    public static FileMeta get(Path path) throws IOException {
+        FileMeta meta = CACHE.get(path);
+        if (meta != null) {
+            return meta;
+        }
+        long version = INVALIDATIONS.get();
+        meta = FileMeta.of(path);
+        // 不缓存不存在的文件，避免随机文件名撑大缓存
+        if (meta != null && WATCHED.contains(path.getParent())) {
+            CACHE.put(path, meta);
+            // 读取属性期间文件可能已经变化，这时放弃刚写入的条目
+            if (INVALIDATIONS.get() != version) {
+                CACHE.remove(path, meta);
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * 获取不会被修改的文件的元数据，例如内容寻址存储中的文件，不需要目录监听即可缓存。
+     * @param path 规范化后的绝对路径
+     * @return 文件元数据；文件不存在或不可读时返回null
+     */
+    public static FileMeta getImmutable(Path path) throws IOException {
+        FileMeta meta = CACHE.get(path);
+        if (meta == null) {
+            meta = FileMeta.of(path);
+            if (meta != null) {
+                CACHE.put(path, meta);
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * 主动使缓存条目失效。本服务自己写文件后调用，不必等待目录监听的通知。
+     * @param path 文件路径
+     */
+    public static void invalidate(Path path) {
+        INVALIDATIONS.incrementAndGet();
+        CACHE.remove(path.toAbsolutePath().normalize());
+    }
+
+    private static void watch(WatchService watchService) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            INVALIDATIONS.incrementAndGet();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 事件丢失时无法知道哪些文件变了，清空该目录下的所有条目
+                    CACHE.keySet().removeIf(path -> dir.equals(path.getParent()));
+                } else {
+                    CACHE.remove(dir.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                WATCHED.remove(dir);
+                INVALIDATIONS.incrementAndGet();
+                CACHE.keySet().removeIf(path -> dir.equals(path.getParent()));
+            }
+        }
+    }
+}
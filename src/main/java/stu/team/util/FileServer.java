@@ -0,0 +1,320 @@
+package stu.team.util;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 把本地文件写入HTTP响应，支持Range（单段和多段）、If-None-Match / If-Modified-Since 条件请求。
+ * 容器支持时通过sendfile零拷贝发送，文件内容不经过JVM堆；否则（以及多段Range）使用 FileChannel.transferTo
+ * 写入 ServletOutputStream 包装的通道，目标不是文件或套接字通道，JDK 会经过一个小的堆缓冲区逐段复制，
+ * 内存占用与文件大小无关。
+ * @author crc
+ */
+public class FileServer {
+
+    // Tomcat 的 sendfile 请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 一次请求最多接受的区间数量，超过时忽略Range返回整个文件
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * 发送文件。
+     * @param meta 文件元数据
+     * @param disposition Content-Disposition 响应头，为null时不设置
+     * @param request HTTP请求
+     * @param response HTTP响应
+     */
+    public static void serve(FileMeta meta, String disposition, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, meta.getEtag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, meta.getLastModified());
+        if (disposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+        }
+
+        if (isNotModified(meta, request)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long size = meta.getSize();
+        List<long[]> ranges = parseRanges(meta, request);
+        if (ranges == null) {
+            // 没有Range请求，返回整个文件
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(meta.getContentType());
+            response.setContentLengthLong(size);
+            send(meta, 0, size, request, response);
+        } else if (ranges.isEmpty()) {
+            // 所有区间都超出文件范围
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(meta.getContentType());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, size));
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            send(meta, range[0], range[1] - range[0] + 1, request, response);
+        } else {
+            sendMultipart(meta, ranges, request, response);
+        }
+    }
+
+    /**
+     * 生成下载用的 Content-Disposition，文件名含非ASCII字符时使用 RFC 5987 编码。
+     * @param fileName 文件名
+     * @return Content-Disposition 响应头的值
+     */
+    public static String attachment(String fileName) {
+        ContentDisposition.Builder builder = ContentDisposition.attachment();
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(fileName)) {
+            builder.filename(fileName);
+        } else {
+            builder.filename(fileName, StandardCharsets.UTF_8);
+        }
+        return builder.build().toString();
+    }
+
+    /**
+     * 判断条件请求是否可以返回304。If-None-Match 存在时忽略 If-Modified-Since。
+     */
+    private static boolean isNotModified(FileMeta meta, HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagMatches(ifNoneMatch, meta.getEtag(), true);
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            // HTTP日期只精确到秒
+            return ifModifiedSince != -1 && meta.getLastModified() / 1000 <= ifModifiedSince / 1000;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * 在逗号分隔的ETag列表中查找当前ETag。
+     * @param header 请求头的值
+     * @param etag 当前ETag
+     * @param weak 是否使用弱比较（忽略 W/ 前缀）
+     */
+    public static boolean etagMatches(String header, String etag, boolean weak) {
+        if ("*".equals(header.trim())) {
+            return true;
+        }
+        int start = 0;
+        while (start < header.length()) {
+            int end = header.indexOf(',', start);
+            if (end == -1) {
+                end = header.length();
+            }
+            String candidate = header.substring(start, end).trim();
+            if (candidate.startsWith("W/")) {
+                if (!weak) {
+                    start = end + 1;
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range请求头。
+     * @return null 表示忽略Range返回整个文件；空列表表示所有区间都无法满足；
+     *         否则为按起始位置排序、互不重叠也不相邻的 [起始, 结束] 闭区间列表
+     */
+    private static List<long[]> parseRanges(FileMeta meta, HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        // If-Range 与当前文件不一致时，说明客户端手里的部分内容已过期，返回整个文件
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!etagMatches(ifRange, meta.getEtag(), false)) {
+                    return null;
+                }
+            } else {
+                try {
+                    long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+                    if (date == -1 || meta.getLastModified() / 1000 != date / 1000) {
+                        return null;
+                    }
+                } catch (IllegalArgumentException ex) {
+                    return null;
+                }
+            }
+        }
+
+        long size = meta.getSize();
+        List<long[]> ranges = new ArrayList<>();
+        int start = "bytes=".length();
+        int count = 0;
+        try {
+            while (start < header.length()) {
+                int end = header.indexOf(',', start);
+                if (end == -1) {
+                    end = header.length();
+                }
+                String spec = header.substring(start, end).trim();
+                start = end + 1;
+                if (spec.isEmpty()) {
+                    continue;
+                }
+                if (++count > MAX_RANGES) {
+                    return null;
+                }
+
+                int dash = spec.indexOf('-');
+                if (dash == -1) {
+                    return null;
+                }
+                if (dash == 0) {
+                    // 后缀区间：最后 N 个字节
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new long[]{Math.max(0, size - suffix), size - 1});
+                    }
+                    continue;
+                }
+                long first = Long.parseLong(spec.substring(0, dash));
+                long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (last < first) {
+                    return null;
+                }
+                if (first < size) {
+                    ranges.add(new long[]{first, Math.min(last, size - 1)});
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        return count == 0 ? null : merge(ranges);
+    }
+
+    /**
+     * 合并重叠或相邻的区间，同一段内容不会重复发送。
+     */
+    private static List<long[]> merge(List<long[]> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            if (range[0] <= current[1] + 1) {
+                current[1] = Math.max(current[1], range[1]);
+            } else {
+                merged.add(current);
+                current = range;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private static String contentRange(long[] range, long size) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + size;
+    }
+
+    /**
+     * 以 multipart/byteranges 格式发送多个区间。
+     */
+    private static void sendMultipart(FileMeta meta, List<long[]> ranges, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        long contentLength = closing.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + meta.getContentType() + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, meta.getSize()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + range[1] - range[0] + 1;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(meta.getPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders[i]);
+                transfer(channel, range[0], range[1] - range[0] + 1, target);
+            }
+        }
+        out.write(closing);
+    }
+
+    /**
+     * 发送文件的一个连续区间。容器支持sendfile时只设置请求属性，由容器在请求结束后直接发送。
+     */
+    private static void send(FileMeta meta, long start, long length, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // 路径已经由 FileTransfer.resolve 规范化，不再调用 getCanonicalPath，命中缓存时不产生文件系统调用
+            request.setAttribute(SENDFILE_FILENAME, meta.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(meta.getPath(), StandardOpenOption.READ)) {
+            transfer(channel, start, length, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long length, WritableByteChannel target)
+            throws IOException {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long n = channel.transferTo(position, end - position, target);
+            if (n <= 0) {
+                throw new EOFException("文件在发送过程中被截断");
+            }
+            position += n;
+        }
+    }
+}
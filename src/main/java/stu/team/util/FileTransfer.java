@@ -0,0 +1,180 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+/**
+ * 文件流式传输工具类。
+ * @author crc
+ */
+public class FileTransfer {
+
+    // 每个线程复用一组固定大小的缓冲区，上传时不会按文件大小分配内存
+    private static final ThreadLocal<byte[]> HEAP_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[constant.TransferBufferSize]);
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(constant.TransferBufferSize));
+
+    /**
+     * 在基础目录下解析文件名，拒绝跳出基础目录的路径和以 "." 开头的内部文件（索引、临时文件等）。
+     * @param baseDir 基础目录
+     * @param fileName 文件名
+     * @return 规范化后的文件路径
+     */
+    public static Path resolve(String baseDir, String fileName) {
+        Path base = Paths.get(baseDir).toAbsolutePath().normalize();
+        Path target = base.resolve(fileName).normalize();
+        if (!target.startsWith(base) || target.equals(base)) {
+            throw new IllegalArgumentException("非法的文件名: " + fileName);
+        }
+        for (Path segment : base.relativize(target)) {
+            if (segment.toString().startsWith(".")) {
+                throw new IllegalArgumentException("非法的文件名: " + fileName);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 从输入流读取数据并直接写入目标文件，同一遍读取中统计大小并计算摘要。
+     * 数据先写入同目录下的临时文件（每次上传一个独立的文件名，同名文件的并发上传互不影响），
+     * 完成后原子地替换目标文件。
+     *
+     * @param in 输入流
+     * @param target 目标文件
+     * @param maxSize 允许的最大字节数
+     * @param algorithms 需要计算的摘要算法
+     * @return 上传结果
+     */
+    public static UploadResult receive(InputStream in, Path target, long maxSize, String... algorithms)
+            throws IOException, NoSuchAlgorithmException {
+        StreamHasher hasher = new StreamHasher(algorithms);
+        byte[] chunk = HEAP_BUFFER.get();
+        ByteBuffer buffer = DIRECT_BUFFER.get();
+        Path partFile = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".part");
+        long size = 0;
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                size += n;
+                if (size > maxSize) {
+                    throw new FileTooLargeException(maxSize);
+                }
+                hasher.update(chunk, 0, n);
+                buffer.clear();
+                buffer.put(chunk, 0, n).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(partFile);
+            throw ex;
+        }
+        // 改名不改变修改时间，在改名前读取，不会读到之后被并发替换的文件
+        long lastModified = Files.getLastModifiedTime(partFile).toMillis();
+        Files.move(partFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileMetaCache.invalidate(target);
+
+        return new UploadResult(size, lastModified, System.nanoTime() - start, hasher.digests());
+    }
+
+
+    /**
+     * 从输入流读取数据并写入文件通道的指定位置（定位写，不移动通道的当前位置），
+     * 多个线程可以同时写同一个通道的不同区域。
+     *
+     * @param in 输入流
+     * @param channel 目标文件通道
+     * @param position 写入的起始位置
+     * @param maxLength 允许写入的最大字节数
+     * @return 实际写入的字节数
+     */
+    public static long receiveAt(InputStream in, FileChannel channel, long position, long maxLength)
+            throws IOException {
+        byte[] chunk = HEAP_BUFFER.get();
+        ByteBuffer buffer = DIRECT_BUFFER.get();
+        long written = 0;
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            if (written + n > maxLength) {
+                throw new FileTooLargeException(maxLength);
+            }
+            buffer.clear();
+            buffer.put(chunk, 0, n).flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+        }
+        return written;
+    }
+
+
+    /**
+     * 上传文件超过大小限制时抛出的异常。
+     */
+    public static class FileTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public FileTooLargeException(long maxSize) {
+            super(maxSize >= 1024 * 1024
+                    ? "文件大小超过限制: " + maxSize / 1024 / 1024 + "MB"
+                    : "数据大小超过限制: " + maxSize + " 字节");
+        }
+    }
+
+
+    /**
+     * 一次流式上传的结果：文件大小、修改时间、耗时和摘要。
+     */
+    public static class UploadResult {
+        private final long size;
+        private final long lastModified;
+        private final long elapsedNanos;
+        private final Map<String, String> digests;
+
+        public UploadResult(long size, long lastModified, long elapsedNanos, Map<String, String> digests) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.elapsedNanos = elapsedNanos;
+            this.digests = digests;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public Map<String, String> getDigests() {
+            return digests;
+        }
+
+        /**
+         * @return 上传吞吐量，单位 MB/s
+         */
+        public double getThroughput() {
+            double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+            return size / seconds / (1024 * 1024);
+        }
+    }
+}
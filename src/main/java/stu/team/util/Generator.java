@@ -1,51 +1,43 @@
 package stu.team.util;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.security.SecureRandom;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class Generator {
 
 
 //    二维码生成
     public static ResponseEntity<byte[]> generateQRCode(String text) {
-        // 设置二维码的宽度和高度
-        int width = 500;
-        int height = 500;
+        return generateQRCode(text, QrCodes.Options.DEFAULT, null);
+    }
 
-        // 创建QRCodeWriter对象
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
+    /**
+     * 生成二维码，相同的文本和参数直接返回缓存的图片。
+     * @param text 文本或URL
+     * @param options 输出格式、尺寸、空白宽度和纠错级别
+     * @param ifNoneMatch If-None-Match 请求头，与图片的ETag相同时返回304，可以为null
+     * @return 二维码图像
+     */
+    public static ResponseEntity<byte[]> generateQRCode(String text, QrCodes.Options options, String ifNoneMatch) {
         try {
-            // 定义二维码的参数
-            Map<EncodeHintType, Object> hints = new HashMap<>();
-            hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
-
-            // 生成二维码的位矩阵
-            BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hints);
-
-            // 将位矩阵转换为字节数组
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", byteArrayOutputStream);
-
-            // 创建字节数组
-            byte[] qrImage = byteArrayOutputStream.toByteArray();
+            QrCodes.Image image = QrCodes.render(text, options);
+            if (ifNoneMatch != null && FileServer.etagMatches(ifNoneMatch, image.getEtag(), true)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(image.getEtag()).build();
+            }
 
-            // 返回二维码图像
-            return ResponseEntity.ok().contentType(MediaType.IMAGE_PNG).body(qrImage);
+            // 返回二维码图像，内容只由参数决定，允许客户端缓存
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(image.getContentType()))
+                    .eTag(image.getEtag())
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS))
+                    .body(image.getData());
         } catch (WriterException | IOException e) {
             // 捕获和处理异常
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
@@ -53,43 +45,11 @@ public class Generator {
     }
 
 
-    //    密码生成
+    //    密码生成，每种选中的字符类型至少出现一次
     public static String generatePassword(int length, boolean includeUppercase, boolean includeLowercase,
                                           boolean includeNumbers, boolean includeSpecial) {
-        // 定义密码字符集
-        String upperCaseChars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        String lowerCaseChars = "abcdefghijklmnopqrstuvwxyz";
-        String numberChars = "0123456789";
-        String specialChars = "!@#$%^&*()_+-=[]{}|;':\",.<>/?";
-
-        // 根据用户选择构建字符集
-        StringBuilder characterSet = new StringBuilder();
-        if (includeUppercase) {
-            characterSet.append(upperCaseChars);
-        }
-        if (includeLowercase) {
-            characterSet.append(lowerCaseChars);
-        }
-        if (includeNumbers) {
-            characterSet.append(numberChars);
-        }
-        if (includeSpecial) {
-            characterSet.append(specialChars);
-        }
-
-        // 使用SecureRandom生成安全的随机密码
-        SecureRandom random = new SecureRandom();
-        if (characterSet.length() == 0) {
-            throw new IllegalArgumentException("至少选择一种字符类型");
-        }
-
-        StringBuilder password = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            int randomIndex = random.nextInt(characterSet.length());
-            password.append(characterSet.charAt(randomIndex));
-        }
-
-        return password.toString();
+        return Passwords.generate(length,
+                Passwords.characterSet(includeUppercase, includeLowercase, includeNumbers, includeSpecial));
     }
 
 
@@ -103,34 +63,18 @@ public class Generator {
      * @return 像素风格的图像
      */
     public static BufferedImage generatePixelArt(BufferedImage originalImage, int pixelSize) {
-        int width = originalImage.getWidth();
-        int height = originalImage.getHeight();
-
-        // 创建一个新的图像，用于存储像素风格的结果。
-        BufferedImage pixelArtImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-        // 遍历原始图像的每个像素。
-        for (int x = 0; x < width; x += pixelSize) {
-            for (int y = 0; y < height; y += pixelSize) {
-                // 获取当前像素的颜色。
-                int rgb = originalImage.getRGB(x, y);
-                Color color = new Color(rgb);
-
-                // 将当前像素的颜色应用到周围的像素上，以创建大块的像素效果。
-                for (int i = 0; i < pixelSize; i++) {
-                    for (int j = 0; j < pixelSize; j++) {
-                        int newX = x + i;
-                        int newY = y + j;
-
-                        // 确保新的坐标在图像范围内。
-                        if (newX < width && newY < height) {
-                            pixelArtImage.setRGB(newX, newY, color.getRGB());
-                        }
-                    }
-                }
-            }
-        }
+        return generatePixelArt(originalImage, pixelSize, PixelArt.Mode.SAMPLE);
+    }
 
-        return pixelArtImage;
+    /**
+     * 生成像素风格的图像。
+     *
+     * @param originalImage 原始图像
+     * @param pixelSize     像素的尺寸
+     * @param mode          取色方式：取块左上角的颜色或块内的平均颜色
+     * @return 像素风格的图像
+     */
+    public static BufferedImage generatePixelArt(BufferedImage originalImage, int pixelSize, PixelArt.Mode mode) {
+        return PixelArt.render(originalImage, pixelSize, mode);
     }
 }
@@ -0,0 +1,314 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 图片格式转换和重新压缩，支持 PNG、JPEG、BMP、GIF。
+ * 需要缩小时在解码阶段先按整数倍抽样，再平滑缩小到目标尺寸；结果直接写入输出流。
+ * 原图的元数据（EXIF 等）只在格式不变且没有缩放时才能保留，其它情况一律去掉。
+ * @author crc
+ */
+public class ImageConverter {
+
+    /**
+     * 输出格式。
+     */
+    public enum Format {
+        PNG("png", "image/png", true),
+        JPEG("jpg", "image/jpeg", false),
+        BMP("bmp", "image/bmp", false),
+        GIF("gif", "image/gif", true);
+
+        private final String extension;
+        private final String contentType;
+        // 是否支持透明度，不支持时透明部分填充为白色
+        private final boolean alpha;
+
+        Format(String extension, String contentType, boolean alpha) {
+            this.extension = extension;
+            this.contentType = contentType;
+            this.alpha = alpha;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isEmpty()) {
+                throw new IllegalArgumentException("缺少输出格式，可选 png、jpeg、bmp、gif");
+            }
+            if ("jpg".equalsIgnoreCase(value)) {
+                return JPEG;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的输出格式: " + value + "，可选 png、jpeg、bmp、gif");
+            }
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+
+    /**
+     * 转换参数：输出格式、JPEG 质量、是否去掉元数据、最大宽高。
+     */
+    public static class Options {
+        private final Format format;
+        private final float quality;
+        private final boolean strip;
+        private final int maxWidth;
+        private final int maxHeight;
+
+        private Options(Format format, float quality, boolean strip, int maxWidth, int maxHeight) {
+            this.format = format;
+            this.quality = quality;
+            this.strip = strip;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        /**
+         * 解析并校验请求参数。
+         * @param format 输出格式 png、jpeg（jpg）、bmp、gif
+         * @param quality JPEG 质量 1-100
+         * @param strip 是否去掉元数据
+         * @param maxWidth 最大宽度，0 表示不限制
+         * @param maxHeight 最大高度，0 表示不限制
+         */
+        public static Options parse(String format, int quality, boolean strip, int maxWidth, int maxHeight) {
+            Format outputFormat = Format.parse(format);
+            if (quality < 1 || quality > 100) {
+                throw new IllegalArgumentException("JPEG 质量应在 1 到 100 之间");
+            }
+            if (maxWidth < 0 || maxHeight < 0) {
+                throw new IllegalArgumentException("最大宽高不能为负数");
+            }
+            return new Options(outputFormat, quality / 100f, strip, maxWidth, maxHeight);
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+    }
+
+
+    /**
+     * 读取图片，按参数转换后写入输出流。
+     * @param input 原图
+     * @param out 输出流
+     * @param options 转换参数
+     * @return 原图和结果的格式与尺寸
+     * @throws IllegalArgumentException 无法识别的图片格式
+     * @throws ImageTooLargeException 解码后的像素数超过 constant.MaxConvertPixels
+     * @throws IOException 读取原图或写出结果失败
+     */
+    public static Map<String, Object> convert(ImageInputStream input, OutputStream out, Options options)
+            throws IOException {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            throw new IllegalArgumentException("无法识别的图片格式");
+        }
+        ImageReader reader = readers.next();
+        String sourceFormat;
+        int sourceWidth;
+        int sourceHeight;
+        int[] size;
+        BufferedImage image;
+        IIOMetadata metadata = null;
+        try {
+            reader.setInput(input, true, options.strip);
+            sourceFormat = reader.getFormatName().toLowerCase();
+            sourceWidth = reader.getWidth(0);
+            sourceHeight = reader.getHeight(0);
+            size = options.maxWidth == 0 && options.maxHeight == 0
+                    ? new int[]{sourceWidth, sourceHeight}
+                    : Thumbnails.scaledSize(sourceWidth, sourceHeight, options.maxWidth, options.maxHeight, Thumbnails.Fit.CONTAIN);
+
+            // 保留至少两倍目标尺寸的像素，再由双线性插值缩小；
+            // 解码后超过 constant.MaxConvertPixels 时在不小于目标尺寸的前提下加大抽样间隔，仍然超过则拒绝
+            int subsampling = Math.max(1, Math.min(sourceWidth / (size[0] * 2), sourceHeight / (size[1] * 2)));
+            int maxSubsampling = Math.max(1, Math.min(sourceWidth / size[0], sourceHeight / size[1]));
+            while (subsampling < maxSubsampling
+                    && decodedPixels(sourceWidth, sourceHeight, subsampling) > constant.MaxConvertPixels) {
+                subsampling++;
+            }
+            if (decodedPixels(sourceWidth, sourceHeight, subsampling) > constant.MaxConvertPixels) {
+                throw new ImageTooLargeException(sourceWidth, sourceHeight);
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            image = reader.read(0, param);
+            boolean resized = size[0] != sourceWidth || size[1] != sourceHeight;
+            if (!options.strip && !resized && sameFormat(sourceFormat, options.format)) {
+                metadata = metadata(reader);
+            }
+        } finally {
+            reader.dispose();
+        }
+
+        image = prepare(image, size[0], size[1], options.format);
+        write(image, metadata, out, options);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sourceFormat", sourceFormat);
+        result.put("sourceWidth", sourceWidth);
+        result.put("sourceHeight", sourceHeight);
+        result.put("format", options.format.getExtension());
+        result.put("width", image.getWidth());
+        result.put("height", image.getHeight());
+        result.put("metadata", metadata != null);
+        return result;
+    }
+
+    /**
+     * 转换图片并保存为文件。先写入同一目录下的临时文件再改名，读取方不会看到写了一半的文件。
+     * @param input 原图
+     * @param target 保存的位置
+     * @param options 转换参数
+     * @param overwrite 文件已存在时是否覆盖
+     * @return 原图和结果的格式与尺寸，以及结果的文件大小
+     * @throws FileAlreadyExistsException 文件已存在且不允许覆盖
+     */
+    public static Map<String, Object> convert(ImageInputStream input, Path target, Options options, boolean overwrite)
+            throws IOException {
+        if (!overwrite && Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.getFileName().toString());
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".convert", ".tmp");
+        try {
+            Map<String, Object> result;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                result = convert(input, out, options);
+            }
+            result.put("size", Files.size(temp));
+            if (overwrite) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                // 不覆盖时不能使用 ATOMIC_MOVE，它在部分系统上会直接替换已存在的文件
+                Files.move(temp, target);
+            }
+            FileMetaCache.invalidate(target);
+            return result;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static long decodedPixels(int width, int height, int subsampling) {
+        return (long) ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+    }
+
+    // 缩放到目标尺寸，并转换成输出格式能写入的像素类型
+    private static BufferedImage prepare(BufferedImage image, int width, int height, Format format) {
+        boolean keepAlpha = format.alpha && image.getColorModel().hasAlpha();
+        boolean resize = image.getWidth() != width || image.getHeight() != height;
+        // PNG 和 GIF 能直接写入各种像素类型；JPEG 和 BMP 只接受不带透明度的RGB，灰度图可以原样写入
+        boolean compatible = format.alpha
+                || image.getType() == BufferedImage.TYPE_INT_RGB
+                || image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        if (!resize && compatible) {
+            return image;
+        }
+
+        BufferedImage target = new BufferedImage(width, height,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!keepAlpha) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static void write(BufferedImage image, IIOMetadata metadata, OutputStream out, Options options)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(image),
+                options.format.name().toLowerCase());
+        if (!writers.hasNext()) {
+            throw new IOException("无法写入 " + options.format.getExtension() + " 格式");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (options.format == Format.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(options.quality);
+            }
+            writer.write(null, new IIOImage(image, null, metadata), param);
+            output.flush();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // 读取原图的元数据，元数据不规范时放弃保留，不影响转换
+    private static IIOMetadata metadata(ImageReader reader) {
+        try {
+            return reader.getImageMetadata(0);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean sameFormat(String sourceFormat, Format format) {
+        return format == Format.JPEG ? "jpeg".equals(sourceFormat) || "jpg".equals(sourceFormat)
+                : format.name().equalsIgnoreCase(sourceFormat);
+    }
+
+
+    /**
+     * 原图解码后的像素数超过 constant.MaxConvertPixels 时抛出的异常。
+     */
+    public static class ImageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ImageTooLargeException(int width, int height) {
+            this("图片尺寸 " + width + "x" + height + " 超过限制，最多 " + constant.MaxConvertPixels + " 像素，可以指定较小的 maxWidth / maxHeight");
+        }
+
+        public ImageTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
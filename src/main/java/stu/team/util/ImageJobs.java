@@ -0,0 +1,53 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限制同时处理的图片任务数量。
+ * 解码大图占用的内存远大于普通请求，一批大图同时到达时超出上限的请求排队等待，
+ * 等待超过 constant.ImageJobTimeout 后放弃，避免耗尽堆内存。
+ * @author crc
+ */
+public class ImageJobs {
+
+    private static final Semaphore PERMITS = new Semaphore(constant.MaxImageJobs, true);
+
+    /**
+     * 取得一个任务许可，用 try-with-resources 在任务结束后归还。
+     * @throws RejectedExecutionException 等待超时或被中断
+     */
+    public static Permit acquire() {
+        try {
+            if (!PERMITS.tryAcquire(constant.ImageJobTimeout, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("图片处理任务过多，请稍后重试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待图片处理任务时被中断");
+        }
+        return new Permit();
+    }
+
+
+    /**
+     * 任务许可，关闭时归还，重复关闭没有影响。
+     */
+    public static class Permit implements AutoCloseable {
+        private boolean released;
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                PERMITS.release();
+            }
+        }
+    }
+}
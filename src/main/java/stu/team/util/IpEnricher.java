@@ -0,0 +1,244 @@
+package stu.team.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 批量为日志中的IP地址标注地理位置。
+ * 输入按行读取，每行取第一个IPv4地址；每批行在线程池中并行查询，同时读取下一批，
+ * 结果按输入顺序写出。内存中最多同时存在两批数据，与输入大小无关。
+ * @author crc
+ */
+public class IpEnricher {
+
+    // 每批处理的行数
+    private static final int BATCH_SIZE = 8192;
+
+    public enum Format {
+        CSV("text/csv;charset=UTF-8"),
+        NDJSON("application/x-ndjson;charset=UTF-8");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return CSV;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的输出格式: " + value);
+            }
+        }
+    }
+
+    /**
+     * 读取输入中的IP地址并写出地理位置，没有IP地址的行被跳过。
+     * CSV 每行为 行号,IP,地理位置；NDJSON 每行为 {"line":行号,"ip":"IP","region":"地理位置"}。
+     * @param in 输入，UTF-8 文本
+     * @param out 输出
+     * @param format 输出格式
+     * @return 标注的IP数量
+     */
+    public static long enrich(InputStream in, OutputStream out, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        if (format == Format.CSV) {
+            writer.write("line,ip,region\n");
+        }
+
+        long lineNumber = 0;
+        long count = 0;
+        Batch pending = null;
+        while (true) {
+            Batch batch = new Batch();
+            String line;
+            while (batch.size < BATCH_SIZE && (line = reader.readLine()) != null) {
+                lineNumber++;
+                long ip = parseFirstIp(line);
+                if (ip >= 0) {
+                    batch.add(lineNumber, ip);
+                }
+            }
+            boolean last = batch.size < BATCH_SIZE;
+
+            // 当前批提交查询后再写出上一批，读取和写出与查询同时进行
+            batch.submit();
+            if (pending != null) {
+                count += pending.writeTo(writer, format);
+            }
+            pending = batch;
+            if (last) {
+                break;
+            }
+        }
+        count += pending.writeTo(writer, format);
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * 在一行文本中查找第一个IPv4地址。
+     * @param line 文本
+     * @return 数值形式的IP地址，找不到时返回-1
+     */
+    public static long parseFirstIp(CharSequence line) {
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            // 只从数字串的开头开始匹配，避免把 "1234.5.6.7" 识别成 "234.5.6.7"
+            if (isDigit(line.charAt(i)) && (i == 0 || !isDigit(line.charAt(i - 1)) && line.charAt(i - 1) != '.')) {
+                long ip = 0;
+                int p = i;
+                int part = 0;
+                for (; part < 4; part++) {
+                    int start = p;
+                    int value = 0;
+                    while (p < length && p - start < 3 && isDigit(line.charAt(p))) {
+                        value = value * 10 + (line.charAt(p) - '0');
+                        p++;
+                    }
+                    if (p == start || value > 255 || p < length && isDigit(line.charAt(p))) {
+                        break;
+                    }
+                    ip = ip << 8 | value;
+                    if (part < 3) {
+                        if (p >= length || line.charAt(p) != '.') {
+                            break;
+                        }
+                        p++;
+                    }
+                }
+                // 后面紧跟 ".数字" 的是版本号之类的长串，不是IP地址
+                if (part == 4 && (p + 1 >= length || line.charAt(p) != '.' || !isDigit(line.charAt(p + 1)))) {
+                    return ip;
+                }
+                i = p > i ? p : i + 1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String formatIp(long ip) {
+        return (ip >>> 24 & 0xFF) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+
+    /**
+     * 一批待查询的IP地址，按线程数切分后并行查询。
+     */
+    private static class Batch {
+        private final long[] lines = new long[BATCH_SIZE];
+        private final long[] ips = new long[BATCH_SIZE];
+        private final String[] regions = new String[BATCH_SIZE];
+        private final List<Future<?>> futures = new ArrayList<>();
+        private int size;
+
+        void add(long line, long ip) {
+            lines[size] = line;
+            ips[size] = ip;
+            size++;
+        }
+
+        void submit() {
+            int step = Math.max(256, (size + Workers.PARALLELISM - 1) / Workers.PARALLELISM);
+            for (int from = 0; from < size; from += step) {
+                int start = from;
+                int end = Math.min(size, from + step);
+                futures.add(Workers.CPU.submit(() -> {
+                    for (int i = start; i < end; i++) {
+                        try {
+                            regions[i] = IpRegionUtil.queryRegion(ips[i]);
+                        } catch (IOException e) {
+                            regions[i] = "查询地理位置失败";
+                        }
+                    }
+                }));
+            }
+        }
+
+        int writeTo(Writer writer, Format format) throws IOException {
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("IP查询被中断", e);
+            } catch (ExecutionException e) {
+                throw new IOException("IP查询失败: " + e.getCause(), e.getCause());
+            }
+
+            for (int i = 0; i < size; i++) {
+                if (format == Format.CSV) {
+                    writer.write(Long.toString(lines[i]));
+                    writer.write(',');
+                    writer.write(formatIp(ips[i]));
+                    writer.write(',');
+                    writeCsvField(writer, regions[i]);
+                    writer.write('\n');
+                } else {
+                    writer.write("{\"line\":");
+                    writer.write(Long.toString(lines[i]));
+                    writer.write(",\"ip\":\"");
+                    writer.write(formatIp(ips[i]));
+                    writer.write("\",\"region\":");
+                    writeJsonString(writer, regions[i]);
+                    writer.write("}\n");
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -1,26 +1,59 @@
 package stu.team.util;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.lionsoul.ip2region.xdb.Searcher;
+import stu.team.constant.constant;
 
+/**
+ * 基于 ip2region 的IP地理位置查询，可以被多个线程同时调用。
+ * 数据库在启动时按 constant.IpRegionMode 加载到内存。buffer 模式的查询只是内存中的二分查找，不需要缓存；
+ * vector 模式的查询需要读文件，结果缓存在分段的LRU缓存中。
+ * constant.IpRegionDbPath 指向的文件更新后，新数据库在后台加载、校验，然后原子替换旧数据库，
+ * 正在进行的查询继续使用旧数据库完成，最后一个查询结束后旧数据库才被关闭，不需要重启服务。
+ * @author crc
+ */
 public class IpRegionUtil {
 
-    private static Searcher searcher;
+    private static final String RESOURCE = "/ip2region/ip2region.xdb";
+    private static final Path DB_PATH = Paths.get(constant.IpRegionDbPath);
+
+    // 缓存分段数，降低多线程同时查询时的锁竞争
+    private static final int CACHE_SEGMENTS = 16;
+
+    // 校验新数据库时试查的IP地址
+    private static final long[] PROBES = {0L, 0x01010101L, 0x08080808L, 0x72727272L, 0xDFFFFFFFL, 0xFFFFFFFFL};
+
+    private static final AtomicReference<Database> DATABASE = new AtomicReference<>();
 
     static {
         try {
-            // 使用InputStream读取资源
-            InputStream is = IpRegionUtil.class.getResourceAsStream("/ip2region/ip2region.xdb");
-            Path tempFilePath = Files.createTempFile("ip2region", ".xdb");
-            Files.copy(is, tempFilePath, StandardCopyOption.REPLACE_EXISTING);
-            searcher = Searcher.newWithFileOnly(tempFilePath.toString());
+            reload();
         } catch (Exception e) {
             e.printStackTrace();
         }
+        if (constant.IpRegionReloadInterval > 0) {
+            ScheduledExecutorService scheduler =
+                    Executors.newSingleThreadScheduledExecutor(Workers.daemonThreads("ip2region-reload"));
+            scheduler.scheduleWithFixedDelay(IpRegionUtil::reloadIfModified, constant.IpRegionReloadInterval,
+                    constant.IpRegionReloadInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -31,11 +64,319 @@ public class IpRegionUtil {
     public static String queryRegionByIp(String ip) {
         try {
             // 执行查询
-            String region = searcher.search(ip);
-            return region;
+            return queryRegion(Searcher.checkIP(ip));
         } catch (Exception e) {
             e.printStackTrace();
             return "查询地理位置失败";
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 根据数值形式的IPv4地址查询地理位置，优先读取缓存。
+     * @param ip IPv4地址，例如 Searcher.checkIP 的返回值
+     * @return 地理位置信息
+     */
+    public static String queryRegion(long ip) throws IOException {
+        while (true) {
+            Database database = DATABASE.get();
+            if (database == null) {
+                throw new IOException("ip2region 数据库未加载");
+            }
+            // 取到的数据库可能刚被替换并关闭，这时 DATABASE 已经指向新数据库，重新获取
+            if (database.acquire()) {
+                try {
+                    return database.query(ip);
+                } finally {
+                    database.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新加载数据库：constant.IpRegionDbPath 存在时从该文件加载，否则使用程序自带的数据库。
+     * 新数据库校验通过后才替换旧数据库，校验失败时继续使用旧数据库；来源的版本没有变化时不重新加载。
+     * @return 当前数据库的信息
+     */
+    public static synchronized Map<String, Object> reload() throws IOException {
+        boolean file = Files.isRegularFile(DB_PATH);
+        Database current = DATABASE.get();
+        if (current != null && current.version.equals(file ? versionOf(DB_PATH) : RESOURCE)) {
+            return stats();
+        }
+        Database loaded = file ? Database.loadFile(DB_PATH) : Database.loadResource();
+        Database previous = DATABASE.getAndSet(loaded);
+        if (previous != null) {
+            // 交还 DATABASE 持有的引用，仍在使用旧数据库的查询结束后由最后一个查询关闭它
+            previous.release();
+        }
+        return stats();
+    }
+
+    /**
+     * @return 当前数据库的来源、加载方式和缓存命中统计（仅 vector 模式有缓存）
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", constant.IpRegionMode);
+        Database database = DATABASE.get();
+        stats.put("loaded", database != null);
+        if (database != null) {
+            database.stats(stats);
+        }
+        return stats;
+    }
+
+    // 文件的大小或修改时间与当前数据库不同时重新加载
+    private static void reloadIfModified() {
+        try {
+            reload();
+        } catch (Exception e) {
+            // 新文件可能还没写完或已损坏，继续使用旧数据库，下次检查时再试
+            System.out.println("无法重新加载 ip2region 数据库: " + e);
+        }
+    }
+
+    private static String versionOf(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return path + "@" + attrs.size() + "-" + attrs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * 检查数据库结构：文件长度足以容纳头部和向量索引，向量索引指向的段索引都在文件范围内。
+     * @param vectorIndex 向量索引
+     * @param length 数据库文件长度
+     */
+    private static void validate(byte[] vectorIndex, long length) throws IOException {
+        long indexEnd = Searcher.HeaderInfoLength + (long) Searcher.VectorIndexRows * Searcher.VectorIndexCols
+                * Searcher.VectorIndexSize;
+        if (vectorIndex.length != indexEnd - Searcher.HeaderInfoLength || length < indexEnd) {
+            throw new IOException("ip2region 数据库不完整，长度: " + length);
+        }
+        for (int offset = 0; offset < vectorIndex.length; offset += Searcher.VectorIndexSize) {
+            long start = Searcher.getIntLong(vectorIndex, offset);
+            long end = Searcher.getIntLong(vectorIndex, offset + 4);
+            if (start < indexEnd || end < start || end + Searcher.SegmentIndexSize > length) {
+                throw new IOException("ip2region 数据库向量索引损坏，位置: " + offset);
+            }
+        }
+    }
+
+
+    /**
+     * 加载到内存中的数据库及其查询缓存（仅 vector 模式），替换数据库时缓存随之替换。
+     * buffer 模式下整个数据库在内存中，一个 Searcher 可以被所有线程共用；
+     * vector 模式下 Searcher 需要读取文件，不能并发使用，每个线程各自持有一个，
+     * 数据库带有引用计数，DATABASE 持有一个引用，每个查询在查询期间各持有一个，
+     * 数据库被替换并且最后一个引用释放后由 {@link #close()} 统一关闭这些 Searcher 打开的文件。
+     */
+    private static class Database {
+        private final String version;
+        private final long size;
+        private final long loadedAt = System.currentTimeMillis();
+        private final Searcher shared;
+        private final byte[] vectorIndex;
+        private final ThreadLocal<Searcher> perThread;
+        // vector 模式下各线程创建的 Searcher，创建和关闭都在它的锁下进行
+        private final Set<Searcher> searchers = ConcurrentHashMap.newKeySet();
+        private boolean closed;
+        private final Path snapshot;
+        private final LruCache<Long, String>[] cache;
+        // 初始的引用属于 DATABASE，降到 0 后数据库已关闭，不能再获取
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Database(String version, long size, Searcher shared, byte[] vectorIndex, Path snapshot) {
+            this.version = version;
+            this.size = size;
+            this.shared = shared;
+            this.vectorIndex = vectorIndex;
+            this.perThread = vectorIndex == null ? null : ThreadLocal.withInitial(this::openSearcher);
+            // buffer 模式查缓存的开销（分段加锁、维护LRU链表）不低于直接查询，只给 vector 模式建缓存
+            this.cache = vectorIndex == null ? null : newCache();
+            this.snapshot = snapshot;
+        }
+
+        static Database loadResource() throws IOException {
+            try (InputStream is = IpRegionUtil.class.getResourceAsStream(RESOURCE)) {
+                if (is == null) {
+                    throw new IOException("找不到 ip2region 数据库: " + RESOURCE);
+                }
+                // vector 模式需要文件，把资源复制出来
+                if ("vector".equalsIgnoreCase(constant.IpRegionMode)) {
+                    Path snapshot = Files.createTempFile("ip2region", ".xdb");
+                    snapshot.toFile().deleteOnExit();
+                    Files.copy(is, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                    return loadVector(RESOURCE, snapshot);
+                }
+                return loadBuffer(RESOURCE, is.readAllBytes());
+            }
+        }
+
+        static Database loadFile(Path path) throws IOException {
+            String version = versionOf(path);
+            if ("vector".equalsIgnoreCase(constant.IpRegionMode)) {
+                // 数据由各线程按需从文件读取，复制一份快照，避免外部替换文件后索引与数据不一致
+                Path snapshot = Files.createTempFile("ip2region", ".xdb");
+                snapshot.toFile().deleteOnExit();
+                Files.copy(path, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                return loadVector(version, snapshot);
+            }
+            return loadBuffer(version, Files.readAllBytes(path));
+        }
+
+        private static Database loadBuffer(String version, byte[] content) throws IOException {
+            byte[] vectorIndex = new byte[Searcher.VectorIndexRows * Searcher.VectorIndexCols * Searcher.VectorIndexSize];
+            if (content.length >= Searcher.HeaderInfoLength + vectorIndex.length) {
+                System.arraycopy(content, Searcher.HeaderInfoLength, vectorIndex, 0, vectorIndex.length);
+            }
+            validate(vectorIndex, content.length);
+            Database database = new Database(version, content.length, Searcher.newWithBuffer(content), null, null);
+            database.probe();
+            return database;
+        }
+
+        private static Database loadVector(String version, Path snapshot) throws IOException {
+            Database database = null;
+            try {
+                byte[] vectorIndex = Searcher.loadVectorIndexFromFile(snapshot.toString());
+                validate(vectorIndex, Files.size(snapshot));
+                database = new Database(version, Files.size(snapshot), null, vectorIndex, snapshot);
+                database.probe();
+                return database;
+            } catch (IOException | RuntimeException e) {
+                if (database != null) {
+                    database.close();
+                }
+                Files.deleteIfExists(snapshot);
+                throw e;
+            }
+        }
+
+        // 为当前线程打开一个读取快照文件的 Searcher，数据库关闭后不再打开
+        private Searcher openSearcher() {
+            synchronized (searchers) {
+                if (closed) {
+                    throw new IllegalStateException("ip2region 数据库已被替换");
+                }
+                try {
+                    Searcher searcher = Searcher.newWithVectorIndex(snapshot.toString(), vectorIndex);
+                    searchers.add(searcher);
+                    return searcher;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        // 试查几个地址，确认数据段可以正常读取
+        private void probe() throws IOException {
+            for (long ip : PROBES) {
+                try {
+                    search(ip);
+                } catch (IOException | RuntimeException e) {
+                    throw new IOException("ip2region 数据库无法查询 " + Searcher.long2ip(ip) + ": " + e, e);
+                }
+            }
+        }
+
+        /**
+         * 在查询前获取一个引用。
+         * @return 数据库已经关闭时返回 false
+         */
+        boolean acquire() {
+            while (true) {
+                int count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        // 释放一个引用，最后一个引用释放时关闭数据库
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                close();
+            }
+        }
+
+        String query(long ip) throws IOException {
+            if (cache == null) {
+                return search(ip);
+            }
+            LruCache<Long, String> segment = cache[(int) ((ip ^ (ip >>> 16)) & (CACHE_SEGMENTS - 1))];
+            String region = segment.get(ip);
+            if (region == null) {
+                region = search(ip);
+                segment.put(ip, region);
+            }
+            return region;
+        }
+
+        private String search(long ip) throws IOException {
+            Searcher searcher = shared != null ? shared : perThread.get();
+            return searcher.search(ip);
+        }
+
+        /**
+         * 关闭 vector 模式下各线程的 Searcher，然后删除快照文件。
+         * buffer 模式的数据在最后一个查询结束后由垃圾回收释放。
+         */
+        void close() {
+            if (snapshot == null) {
+                return;
+            }
+            synchronized (searchers) {
+                closed = true;
+                for (Searcher searcher : searchers) {
+                    try {
+                        searcher.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                searchers.clear();
+            }
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void stats(Map<String, Object> stats) {
+            stats.put("source", version);
+            stats.put("size", size);
+            stats.put("loadedAt", loadedAt);
+            stats.put("cached", cache != null);
+            if (cache == null) {
+                return;
+            }
+            long hits = 0;
+            long misses = 0;
+            long evictions = 0;
+            long entries = 0;
+            for (LruCache<Long, String> segment : cache) {
+                hits += segment.hitCount();
+                misses += segment.missCount();
+                evictions += segment.evictionCount();
+                entries += segment.size();
+            }
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("evictions", evictions);
+            stats.put("entries", entries);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static LruCache<Long, String>[] newCache() {
+            LruCache<Long, String>[] segments = new LruCache[CACHE_SEGMENTS];
+            for (int i = 0; i < CACHE_SEGMENTS; i++) {
+                segments[i] = new LruCache<>(constant.IpRegionCacheSize / CACHE_SEGMENTS);
+            }
+            return segments;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package stu.team.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按权重限制容量的LRU缓存，线程安全。
+ * 每个条目的权重由 weigher 计算（例如键和值占用的字节数），总权重超过上限时淘汰最久未使用的条目。
+ * @author crc
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final ToLongBiFunction<K, V> weigher;
+    private final BiConsumer<K, V> onEvict;
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxWeight 最大总权重
+     * @param weigher 条目权重计算函数，只根据值计算
+     * @param onEvict 条目因容量不足被淘汰时的回调，在锁外调用，可以为null
+     */
+    public LruCache(long maxWeight, ToLongFunction<V> weigher, BiConsumer<K, V> onEvict) {
+        this(maxWeight, (ToLongBiFunction<K, V>) (key, value) -> weigher.applyAsLong(value), onEvict);
+    }
+
+    /**
+     * @param maxWeight 最大总权重
+     * @param weigher 条目权重计算函数，根据键和值计算，适用于键本身较大的缓存
+     * @param onEvict 条目因容量不足被淘汰时的回调，在锁外调用，可以为null
+     */
+    public LruCache(long maxWeight, ToLongBiFunction<K, V> weigher, BiConsumer<K, V> onEvict) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * 按条目数量限制容量的缓存。
+     * @param maxEntries 最大条目数
+     */
+    public LruCache(int maxEntries) {
+        this(maxEntries, (ToLongFunction<V>) value -> 1, null);
+    }
+
+    /**
+     * 查询缓存并统计命中率。
+     * @param key 键
+     * @return 缓存的值，不存在时返回null
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * 判断缓存中是否存在某个键，不影响访问顺序和命中统计。
+     */
+    public synchronized boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * 放入缓存，必要时淘汰最久未使用的条目。已存在的键直接替换，单个条目超过上限时不缓存。
+     * @param key 键
+     * @param value 值
+     */
+    public void put(K key, V value) {
+        List<Map.Entry<K, V>> evicted = new ArrayList<>();
+        synchronized (this) {
+            putLocked(key, value, evicted);
+        }
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * 键不存在时放入缓存。
+     * @param key 键
+     * @param value 值
+     * @return 缓存中已有的值；不存在时返回新放入的值
+     */
+    public V putIfAbsent(K key, V value) {
+        List<Map.Entry<K, V>> evicted = new ArrayList<>();
+        synchronized (this) {
+            V existing = map.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            putLocked(key, value, evicted);
+        }
+        notifyEvicted(evicted);
+        return value;
+    }
+
+    private void putLocked(K key, V value, List<Map.Entry<K, V>> evicted) {
+        long entryWeight = weigher.applyAsLong(key, value);
+        V old = map.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(key, old);
+        }
+        if (entryWeight <= maxWeight) {
+            map.put(key, value);
+            weight += entryWeight;
+        }
+
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            it.remove();
+            weight -= weigher.applyAsLong(eldest.getKey(), eldest.getValue());
+            evictions++;
+            evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+        }
+    }
+
+    /**
+     * 删除缓存条目，不触发淘汰回调。
+     * @param key 键
+     * @return 被删除的值
+     */
+    public synchronized V remove(K key) {
+        V old = map.remove(key);
+        if (old != null) {
+            weight -= weigher.applyAsLong(key, old);
+        }
+        return old;
+    }
+
+    /**
+     * 清空缓存，不触发淘汰回调。
+     */
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return 命中次数、未命中次数、淘汰次数、条目数和总权重
+     */
+    public synchronized Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("size", (long) map.size());
+        stats.put("weight", weight);
+        return stats;
+    }
+
+    private void notifyEvicted(List<Map.Entry<K, V>> evicted) {
+        if (onEvict == null) {
+            return;
+        }
+        for (Map.Entry<K, V> entry : evicted) {
+            onEvict.accept(entry.getKey(), entry.getValue());
+        }
+    }
+}
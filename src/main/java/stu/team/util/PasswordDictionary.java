@@ -0,0 +1,219 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 密码强度检查使用的字典：常见密码、键盘和字母顺序的序列、英文单词（同时用于生成密码短语）。
+ * 字典在类加载时读取一次。每个条目只保存为一个 long：高 44 位是小写形式的 64 位哈希，低 20 位是排名，
+ * 所有条目排序后放在一个数组中，查询是一次二分查找，不创建对象；一百万个条目约占 8MB。
+ * 只保存哈希，两个不同字符串哈希相同的概率约为 条目数 / 2^44，对强度估计没有影响。
+ * @author crc
+ */
+public class PasswordDictionary {
+
+    private static final String COMMON_RESOURCE = "/passwords/common.txt";
+    private static final String WORDS_RESOURCE = "/passwords/words.txt";
+
+    // 参与匹配的条目长度范围，更短的条目按逐个字符计算，更长的条目不会被匹配
+    static final int MIN_LENGTH = 3;
+    static final int MAX_LENGTH = 32;
+
+    // 键盘上相邻的按键、字母和数字顺序，它们的所有片段（以及倒序）都作为序列条目
+    private static final String[] SEQUENCES = {
+            "`1234567890-=", "qwertyuiop[]\\", "asdfghjkl;'", "zxcvbnm,./",
+            "~!@#$%^&*()_+", "1qaz2wsx3edc4rfv5tgb6yhn7ujm8ik,9ol.0p;/",
+            "abcdefghijklmnopqrstuvwxyz", "01234567890"
+    };
+
+    private static final int RANK_BITS = 20;
+    private static final long RANK_MASK = (1L << RANK_BITS) - 1;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 常见密码，排名为在列表中的位置。
+     */
+    public static final RankedSet COMMON;
+    /**
+     * 键盘和顺序序列。
+     */
+    public static final RankedSet SEQUENCE;
+    /**
+     * 单词，排名没有意义，猜测次数按单词表的大小计算。
+     */
+    public static final RankedSet WORD;
+
+    // 生成密码短语的单词表
+    private static final String[] WORDS;
+
+    static {
+        List<String> common = readResource(COMMON_RESOURCE);
+        List<String> extra = readFile(Paths.get(constant.PasswordDictionaryPath));
+        COMMON = new RankedSet(common, extra);
+
+        Set<String> sequences = new LinkedHashSet<>();
+        for (int length = MIN_LENGTH; length <= MAX_LENGTH; length++) {
+            for (String sequence : SEQUENCES) {
+                String reversed = new StringBuilder(sequence).reverse().toString();
+                for (int i = 0; i + length <= sequence.length(); i++) {
+                    sequences.add(sequence.substring(i, i + length));
+                    sequences.add(reversed.substring(i, i + length));
+                }
+            }
+        }
+        SEQUENCE = new RankedSet(new ArrayList<>(sequences), List.of());
+
+        List<String> words = readFile(Paths.get(constant.PassphraseWordListPath));
+        if (words.isEmpty()) {
+            words = readResource(WORDS_RESOURCE);
+        }
+        WORDS = new LinkedHashSet<>(words).toArray(new String[0]);
+        WORD = new RankedSet(Arrays.asList(WORDS), List.of());
+    }
+
+    /**
+     * @return 生成密码短语的单词表，不能修改
+     */
+    static String[] words() {
+        return WORDS;
+    }
+
+    /**
+     * 增量计算哈希的一步，查询时对同一起点的所有片段逐个字符计算，不需要截取子串。
+     * 起始值为 {@link #hashStart()}，计算完成后经过 {@link #hashEnd(long)} 得到查询用的哈希。
+     */
+    static long hashStep(long hash, char c) {
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    static long hashStart() {
+        return FNV_OFFSET;
+    }
+
+    // 打散 FNV 的结果，使高位也均匀分布
+    static long hashEnd(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long hash(String text) {
+        long hash = hashStart();
+        for (int i = 0; i < text.length(); i++) {
+            hash = hashStep(hash, text.charAt(i));
+        }
+        return hashEnd(hash);
+    }
+
+    private static List<String> readResource(String resource) {
+        try (InputStream in = PasswordDictionary.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("找不到字典: " + resource);
+            }
+            return readLines(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    // 文件不存在时返回空列表
+    private static List<String> readFile(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return List.of();
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return readLines(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+    }
+
+    private static List<String> readLines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lines.add(line.toLowerCase());
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * 按哈希排序的条目集合。
+     */
+    public static class RankedSet {
+        private final long[] keys;
+
+        // 每个列表中的排名为条目在该列表中的位置，同一条目出现多次时取最小的排名
+        private RankedSet(List<String> first, List<String> second) {
+            long[] keys = new long[first.size() + second.size()];
+            int size = 0;
+            for (List<String> entries : List.of(first, second)) {
+                int rank = 0;
+                for (String entry : entries) {
+                    rank++;
+                    if (entry.length() >= MIN_LENGTH && entry.length() <= MAX_LENGTH) {
+                        keys[size++] = (hash(entry) & ~RANK_MASK) | Math.min(rank, RANK_MASK);
+                    }
+                }
+            }
+            Arrays.sort(keys, 0, size);
+            // 排序后相同哈希的条目相邻，排名最小的在前，只保留它
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || (keys[i] & ~RANK_MASK) != (keys[unique - 1] & ~RANK_MASK)) {
+                    keys[unique++] = keys[i];
+                }
+            }
+            this.keys = Arrays.copyOf(keys, unique);
+        }
+
+        /**
+         * 查询排名。
+         * @param hash 经过 hashEnd 的哈希
+         * @return 排名（从1开始），不存在时返回0
+         */
+        public int rank(long hash) {
+            long key = hash & ~RANK_MASK;
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index < keys.length && (keys[index] & ~RANK_MASK) == key) {
+                return (int) (keys[index] & RANK_MASK);
+            }
+            return 0;
+        }
+
+        /**
+         * @return 条目数量
+         */
+        public int size() {
+            return keys.length;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 密码强度估计。
+ * 把密码拆成若干片段，每个片段是常见密码、键盘序列、英文单词、重复字符或逐个字符猜测，
+ * 用动态规划求猜测次数最少的拆分方式，猜测次数的对数即为熵（位）。
+ * 匹配前把字母转为小写，并把常见的替换字符（@ -> a、0 -> o 等）还原，大小写和替换各增加少量猜测次数。
+ * 每个起点的所有片段逐个字符增量计算哈希，在字典中二分查找，不截取子串。
+ * @author crc
+ */
+public class PasswordStrength {
+
+    // 破解速度（次/秒）：在线有限速、在线无限速、离线慢哈希（bcrypt 等）、离线快哈希（MD5 等）
+    private static final String[] SCENARIOS = {"onlineThrottled", "onlineUnthrottled", "offlineSlowHash", "offlineFastHash"};
+    private static final double[] RATES = {100.0 / 3600, 10, 1e4, 1e10};
+
+    // 分数 0-4 对应的猜测次数上限（以10为底的对数）
+    private static final double[] SCORE_THRESHOLDS = {3, 6, 8, 10};
+
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+    /**
+     * 估计密码的强度。
+     * @param password 密码
+     * @return 熵、猜测次数、分数（0-4）、各种场景下的破解时间、匹配到的片段和建议
+     * @throws IllegalArgumentException 密码为空或超过最大长度
+     */
+    public static Map<String, Object> estimate(String password) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("密码不能为空");
+        }
+        if (password.length() > constant.MaxPasswordLength) {
+            throw new IllegalArgumentException("密码长度不能超过 " + constant.MaxPasswordLength);
+        }
+        int n = password.length();
+        char[] lower = new char[n];
+        char[] plain = new char[n];
+        for (int i = 0; i < n; i++) {
+            lower[i] = Character.toLowerCase(password.charAt(i));
+            plain[i] = unleet(lower[i]);
+        }
+        double bruteforce = log2(cardinality(password, 0, n));
+
+        // bits[i]：猜出前 i 个字符需要的最少猜测次数的对数；match[i]：最后一个片段
+        double[] bits = new double[n + 1];
+        Match[] match = new Match[n + 1];
+        for (int i = 1; i <= n; i++) {
+            bits[i] = Double.MAX_VALUE;
+        }
+        for (int i = 0; i < n; i++) {
+            relax(bits, match, i, i + 1, bits[i] + bruteforce, "bruteforce", 0);
+
+            // 重复的同一个字符
+            int end = i + 1;
+            while (end < n && password.charAt(end) == password.charAt(i)) {
+                end++;
+            }
+            for (int j = i + PasswordDictionary.MIN_LENGTH; j <= end; j++) {
+                relax(bits, match, i, j, bits[i] + log2(cardinality(password, i, i + 1)) + log2(j - i),
+                        "repeat", 0);
+            }
+
+            long lowerHash = PasswordDictionary.hashStart();
+            long plainHash = PasswordDictionary.hashStart();
+            int substitutions = 0;
+            int uppercase = 0;
+            for (int j = i; j < n && j - i < PasswordDictionary.MAX_LENGTH; j++) {
+                lowerHash = PasswordDictionary.hashStep(lowerHash, lower[j]);
+                plainHash = PasswordDictionary.hashStep(plainHash, plain[j]);
+                if (plain[j] != lower[j]) {
+                    substitutions++;
+                }
+                if (Character.isUpperCase(password.charAt(j))) {
+                    uppercase++;
+                }
+                int length = j - i + 1;
+                if (length < PasswordDictionary.MIN_LENGTH) {
+                    continue;
+                }
+                double variations = caseVariations(password, i, length, uppercase);
+                long h = PasswordDictionary.hashEnd(lowerHash);
+                lookup(bits, match, i, j + 1, h, variations);
+                if (substitutions > 0) {
+                    // 每个被替换的字符可能是原字符也可能是替换字符
+                    lookup(bits, match, i, j + 1, PasswordDictionary.hashEnd(plainHash), variations + substitutions);
+                }
+            }
+        }
+
+        List<Map<String, Object>> matches = new ArrayList<>();
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (int end = n; end > 0; end = match[end].start) {
+            Match m = match[end];
+            if ("bruteforce".equals(m.type) && !matches.isEmpty()
+                    && "bruteforce".equals(matches.get(0).get("type"))) {
+                // 连续的逐字符片段合并显示
+                Map<String, Object> previous = matches.get(0);
+                previous.put("token", password.substring(m.start, end) + previous.get("token"));
+                previous.put("bits", round((Double) previous.get("bits") + bits[end] - bits[m.start]));
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("type", m.type);
+            item.put("token", password.substring(m.start, end));
+            if (m.rank > 0) {
+                item.put("rank", m.rank);
+            }
+            item.put("bits", round(bits[end] - bits[m.start]));
+            matches.add(0, item);
+            suggestions.add(suggestion(m.type, m.start == 0 && end == n));
+        }
+        suggestions.remove(null);
+
+        double entropy = bits[n];
+        double log10Guesses = entropy / LOG2_10;
+        int score = 0;
+        while (score < SCORE_THRESHOLDS.length && log10Guesses >= SCORE_THRESHOLDS[score]) {
+            score++;
+        }
+        if (score < 3) {
+            suggestions.add("增加长度，或使用由多个不相关单词组成的密码短语");
+        }
+        Map<String, Object> crackTime = new LinkedHashMap<>();
+        for (int i = 0; i < SCENARIOS.length; i++) {
+            double seconds = Math.pow(2, entropy) / RATES[i];
+            Map<String, Object> time = new LinkedHashMap<>();
+            time.put("seconds", seconds);
+            time.put("display", display(seconds));
+            crackTime.put(SCENARIOS[i], time);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("length", n);
+        result.put("entropy", round(entropy));
+        result.put("guessesLog10", round(log10Guesses));
+        result.put("score", score);
+        result.put("crackTime", crackTime);
+        result.put("matches", matches);
+        result.put("suggestions", suggestions);
+        return result;
+    }
+
+    // 在三个字典中查找片段，命中时尝试以它作为最后一个片段
+    private static void lookup(double[] bits, Match[] match, int start, int end, long hash, double variations) {
+        int rank = PasswordDictionary.COMMON.rank(hash);
+        if (rank > 0) {
+            relax(bits, match, start, end, bits[start] + log2(rank) + variations, "common", rank);
+        }
+        rank = PasswordDictionary.SEQUENCE.rank(hash);
+        if (rank > 0) {
+            // 序列没有常见程度之分，按序列的总数计算
+            relax(bits, match, start, end, bits[start] + log2(PasswordDictionary.SEQUENCE.size()) + variations,
+                    "sequence", 0);
+        }
+        rank = PasswordDictionary.WORD.rank(hash);
+        if (rank > 0) {
+            relax(bits, match, start, end, bits[start] + log2(PasswordDictionary.WORD.size()) + variations,
+                    "word", 0);
+        }
+    }
+
+    private static void relax(double[] bits, Match[] match, int start, int end, double value, String type, int rank) {
+        if (value < bits[end]) {
+            bits[end] = value;
+            match[end] = new Match(start, type, rank);
+        }
+    }
+
+    // 大小写带来的额外猜测次数（位）：全小写为0，首字母大写或全大写为1，其它按大写字母的个数计算
+    private static double caseVariations(String password, int start, int length, int uppercase) {
+        if (uppercase == 0) {
+            return 0;
+        }
+        if (uppercase == length || (uppercase == 1 && Character.isUpperCase(password.charAt(start)))) {
+            return 1;
+        }
+        return uppercase;
+    }
+
+    // 还原常见的替换字符
+    private static char unleet(char c) {
+        switch (c) {
+            case '4':
+            case '@':
+                return 'a';
+            case '8':
+                return 'b';
+            case '3':
+                return 'e';
+            case '6':
+                return 'g';
+            case '1':
+            case '!':
+                return 'i';
+            case '0':
+                return 'o';
+            case '$':
+            case '5':
+                return 's';
+            case '7':
+            case '+':
+                return 't';
+            default:
+                return c;
+        }
+    }
+
+    // 逐个字符猜测时每个字符的可能数：按出现的字符类型累加
+    private static int cardinality(String text, int start, int end) {
+        boolean lower = false, upper = false, digit = false, symbol = false, other = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c < 128) {
+                symbol = true;
+            } else {
+                other = true;
+            }
+        }
+        return (lower ? 26 : 0) + (upper ? 26 : 0) + (digit ? 10 : 0) + (symbol ? 33 : 0) + (other ? 100 : 0);
+    }
+
+    private static String suggestion(String type, boolean whole) {
+        switch (type) {
+            case "common":
+                return whole ? "这是非常常见的密码" : "包含常见密码，很容易被猜到";
+            case "sequence":
+                return "键盘上相邻的按键或 abc、123 这样的顺序很容易被猜到";
+            case "word":
+                return whole ? "单个英文单词很容易被猜到" : null;
+            case "repeat":
+                return "重复的字符很容易被猜到";
+            default:
+                return null;
+        }
+    }
+
+    // 把秒数显示为易读的时间
+    private static String display(double seconds) {
+        if (seconds < 1) {
+            return "不到1秒";
+        }
+        String[] units = {"秒", "分钟", "小时", "天", "个月", "年"};
+        double[] sizes = {1, 60, 3600, 86400, 86400 * 30.0, 86400 * 365.0};
+        if (seconds >= sizes[5] * 100) {
+            return "超过100年";
+        }
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            if (seconds >= sizes[i]) {
+                return Math.round(seconds / sizes[i]) + " " + units[i];
+            }
+        }
+        return "不到1秒";
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+
+    private static class Match {
+        private final int start;
+        private final String type;
+        private final int rank;
+
+        Match(int start, String type, int rank) {
+            this.start = start;
+            this.type = type;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+/**
+ * 随机密码生成。
+ * 每个线程复用一个 SecureRandom，随机字节成批读取；字符集的所有组合在类加载时生成。
+ * 每个字符用一个随机字节按拒绝采样选取（超出字符集大小整数倍的字节丢弃），每个字符的概率完全相同。
+ * 选中的每种字符类型至少出现一次：缺少某种类型的密码整体丢弃重新生成，结果在所有满足要求的密码中均匀分布。
+ * @author crc
+ */
+public class Passwords {
+
+    private static final String UPPERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
+    private static final String NUMBERS = "0123456789";
+    private static final String SPECIAL = "!@#$%^&*()_+-=[]{}|;':\",.<>/?";
+
+    // 字符类型的所有组合，按位掩码（大写 1、小写 2、数字 4、特殊字符 8）索引
+    private static final CharacterSet[] CHARACTER_SETS = new CharacterSet[16];
+    // 每个线程的随机数生成器，SecureRandom 的创建和同步开销只在每个线程上发生一次
+    private static final ThreadLocal<RandomBytes> RANDOM = ThreadLocal.withInitial(RandomBytes::new);
+    // 批量生成时输出缓冲区的大小
+    private static final int BUFFER_SIZE = 1 << 16;
+    // 密码短语的最大单词数
+    private static final int MAX_PASSPHRASE_WORDS = 64;
+
+    static {
+        String[] classes = {UPPERCASE, LOWERCASE, NUMBERS, SPECIAL};
+        for (int mask = 1; mask < CHARACTER_SETS.length; mask++) {
+            CHARACTER_SETS[mask] = new CharacterSet(classes, mask);
+        }
+    }
+
+    /**
+     * 取得字符集。
+     * @throws IllegalArgumentException 没有选择任何字符类型
+     */
+    public static CharacterSet characterSet(boolean includeUppercase, boolean includeLowercase,
+                                            boolean includeNumbers, boolean includeSpecial) {
+        int mask = (includeUppercase ? 1 : 0) | (includeLowercase ? 2 : 0)
+                | (includeNumbers ? 4 : 0) | (includeSpecial ? 8 : 0);
+        if (mask == 0) {
+            throw new IllegalArgumentException("至少选择一种字符类型");
+        }
+        return CHARACTER_SETS[mask];
+    }
+
+    /**
+     * 生成一个密码。
+     * @param length 密码长度
+     * @param characters 字符集
+     * @throws IllegalArgumentException 长度不在允许的范围内
+     */
+    public static String generate(int length, CharacterSet characters) {
+        characters.checkLength(length);
+        byte[] password = new byte[length];
+        characters.fill(password, 0, length, RANDOM.get());
+        return new String(password, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 从单词表中随机选取单词组成密码短语（diceware），每个单词的概率相同。
+     * @param words 单词数量
+     * @param separator 单词之间的分隔符
+     * @param capitalize 是否把每个单词的首字母大写
+     * @throws IllegalArgumentException 单词数量或分隔符不在允许的范围内
+     */
+    public static String passphrase(int words, String separator, boolean capitalize) {
+        if (words < 1 || words > MAX_PASSPHRASE_WORDS) {
+            throw new IllegalArgumentException("单词数量应在 1 到 " + MAX_PASSPHRASE_WORDS + " 之间");
+        }
+        if (separator == null || separator.length() > 8) {
+            throw new IllegalArgumentException("分隔符最多 8 个字符");
+        }
+        String[] list = PasswordDictionary.words();
+        RandomBytes random = RANDOM.get();
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(separator);
+            }
+            String word = list[random.nextInt(list.length)];
+            if (capitalize) {
+                sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                sb.append(word);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 由 words 个单词组成的密码短语的熵（位），即 words * log2(单词表大小)
+     */
+    public static double passphraseEntropy(int words) {
+        return words * Math.log(PasswordDictionary.words().length) / Math.log(2);
+    }
+
+    /**
+     * 生成 count 个密码，每行一个写入输出流。内存中只有一个固定大小的缓冲区，数量不受内存限制。
+     * 参数在写出任何内容之前校验。
+     * @param out 输出流
+     * @param count 密码数量
+     * @param length 密码长度
+     * @param characters 字符集
+     * @throws IllegalArgumentException 数量或长度不在允许的范围内
+     */
+    public static void write(OutputStream out, long count, int length, CharacterSet characters) throws IOException {
+        if (count < 1 || count > constant.MaxBulkPasswords) {
+            throw new IllegalArgumentException("密码数量应在 1 到 " + constant.MaxBulkPasswords + " 之间");
+        }
+        characters.checkLength(length);
+        RandomBytes random = RANDOM.get();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (pos + length + 1 > buffer.length) {
+                out.write(buffer, 0, pos);
+                pos = 0;
+            }
+            characters.fill(buffer, pos, length, random);
+            pos += length;
+            buffer[pos++] = '\n';
+        }
+        out.write(buffer, 0, pos);
+        out.flush();
+    }
+
+
+    /**
+     * 预先生成的字符集。
+     */
+    public static class CharacterSet {
+        private final byte[] alphabet;
+        // 每个字符所属的字符类型（位掩码）
+        private final byte[] classOf;
+        private final int mask;
+        private final int classCount;
+        // 小于该值的随机字节才被采用，保证每个字符的概率相同
+        private final int limit;
+
+        private CharacterSet(String[] classes, int mask) {
+            StringBuilder alphabet = new StringBuilder();
+            StringBuilder classOf = new StringBuilder();
+            for (int i = 0; i < classes.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    alphabet.append(classes[i]);
+                    classOf.append(String.valueOf((char) (1 << i)).repeat(classes[i].length()));
+                }
+            }
+            this.alphabet = alphabet.toString().getBytes(StandardCharsets.US_ASCII);
+            this.classOf = classOf.toString().getBytes(StandardCharsets.US_ASCII);
+            this.mask = mask;
+            this.classCount = Integer.bitCount(mask);
+            this.limit = 256 - 256 % this.alphabet.length;
+        }
+
+        private void checkLength(int length) {
+            if (length < classCount || length > constant.MaxPasswordLength) {
+                throw new IllegalArgumentException("密码长度应在 " + classCount + " 到 " + constant.MaxPasswordLength
+                        + " 之间（每种选中的字符类型至少出现一次）");
+            }
+        }
+
+        // 在 buffer[offset, offset + length) 中生成一个密码
+        private void fill(byte[] buffer, int offset, int length, RandomBytes random) {
+            int seen;
+            do {
+                seen = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    int b;
+                    do {
+                        b = random.next();
+                    } while (b >= limit);
+                    int index = b % alphabet.length;
+                    buffer[i] = alphabet[index];
+                    seen |= classOf[index];
+                }
+            } while (seen != mask);
+        }
+
+        /**
+         * @return 字符集大小
+         */
+        public int size() {
+            return alphabet.length;
+        }
+    }
+
+
+    // 线程自己的 SecureRandom 和随机字节缓冲区
+    private static class RandomBytes {
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] buffer = new byte[4096];
+        private int pos = buffer.length;
+
+        int next() {
+            if (pos == buffer.length) {
+                random.nextBytes(buffer);
+                pos = 0;
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        // [0, bound) 中的随机整数，由4个随机字节按拒绝采样得到
+        int nextInt(int bound) {
+            long limit = (1L << 31) - (1L << 31) % bound;
+            int value;
+            do {
+                value = (next() << 24 | next() << 16 | next() << 8 | next()) & Integer.MAX_VALUE;
+            } while (value >= limit);
+            return value % bound;
+        }
+    }
+}
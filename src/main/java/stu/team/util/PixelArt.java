@@ -0,0 +1,310 @@
+package stu.team.util;
+
+import stu.team.constant.constant;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 像素风格图像生成。
+ * 直接读写 DataBufferInt 中的像素数组，按行顺序处理，与内存布局一致；
+ * 图像按块行切分成水平条带，在 Workers.CPU 线程池中并行处理。
+ * 从文件生成时原图只解码一次，结果逐行写出PNG，不需要在内存中保存完整的结果。
+ * @author crc
+ */
+public class PixelArt {
+
+    // 每个任务至少处理的像素行数，太小时任务调度的开销超过计算本身
+    private static final int MIN_BAND_ROWS = 64;
+
+    /**
+     * 每个像素块的取色方式。
+     */
+    public enum Mode {
+        // 取块左上角像素的颜色
+        SAMPLE,
+        // 取块内所有像素的平均颜色
+        AVERAGE;
+
+        public static Mode parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return SAMPLE;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的取色方式: " + value);
+            }
+        }
+    }
+
+    /**
+     * 生成像素风格的图像。
+     * @param source 原始图像
+     * @param pixelSize 像素块的边长，超过图像的长边时按长边处理
+     * @param mode 取色方式
+     * @return TYPE_INT_RGB 格式的新图像
+     */
+    public static BufferedImage render(BufferedImage source, int pixelSize, Mode mode) {
+        if (pixelSize <= 0) {
+            throw new IllegalArgumentException("像素尺寸必须大于0");
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] output = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        int size = Math.min(pixelSize, Math.max(width, height));
+
+        int blockRows = (height + size - 1) / size;
+        int minBlockRows = Math.max(1, MIN_BAND_ROWS / size);
+        int step = Math.max(minBlockRows, (blockRows + Workers.PARALLELISM - 1) / Workers.PARALLELISM);
+        if (step >= blockRows) {
+            renderBlockRows(source, output, size, mode, 0, blockRows);
+            return target;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(Workers.PARALLELISM);
+        for (int start = 0; start < blockRows; start += step) {
+            int from = start;
+            int to = Math.min(blockRows, start + step);
+            futures.add(Workers.CPU.submit(() -> renderBlockRows(source, output, size, mode, from, to)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("像素图生成被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("像素图生成失败: " + e.getCause(), e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 解码原图，生成像素风格的图像并逐行写出PNG，结果不需要在内存中保存完整的图像。
+     * 原图只解码一次：取左上角颜色时按像素尺寸抽样，每个块只解码一个像素；取平均颜色时解码全部像素。
+     * 与格式转换相同，解码后的像素数不超过 constant.MaxConvertPixels。
+     * @param source 原图文件
+     * @param out 输出流，写入 RGB 格式的PNG
+     * @param pixelSize 像素块的边长，超过原图的长边时按长边处理
+     * @param mode 取色方式
+     * @throws IllegalArgumentException 参数不正确或无法识别的图片格式
+     * @throws ImageConverter.ImageTooLargeException 解码后的像素数超过 constant.MaxConvertPixels
+     * @throws IOException 读取原图或写出结果失败
+     */
+    public static void render(Path source, OutputStream out, int pixelSize, Mode mode) throws IOException {
+        if (pixelSize <= 0) {
+            throw new IllegalArgumentException("像素尺寸必须大于0");
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("无法识别的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int size = Math.min(pixelSize, Math.max(width, height));
+                int blockColumns = (width + size - 1) / size;
+                int blockRows = (height + size - 1) / size;
+
+                long decodedPixels = mode == Mode.SAMPLE ? (long) blockColumns * blockRows : (long) width * height;
+                if (decodedPixels > constant.MaxConvertPixels) {
+                    throw new ImageConverter.ImageTooLargeException("图片尺寸 " + width + "x" + height + " 超过限制，"
+                            + "解码后最多 " + constant.MaxConvertPixels + " 像素，可以使用较大的像素尺寸或 sample 取色方式");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (mode == Mode.SAMPLE) {
+                    param.setSourceSubsampling(size, size, 0, 0);
+                }
+                BufferedImage decoded = reader.read(0, param);
+                // 抽样后的图像每个像素就是一个块
+                BlockColors blocks = new BlockColors(decoded, mode == Mode.SAMPLE ? 1 : size, mode);
+
+                try (PngEncoder encoder = new PngEncoder(out, width, height, 8, PngEncoder.RGB, 6)) {
+                    byte[] line = new byte[encoder.getRowBytes()];
+                    for (int blockRow = 0; blockRow < blockRows; blockRow++) {
+                        int[] colors = blocks.row(blockRow);
+                        for (int bx = 0, x = 0; bx < blockColumns; bx++) {
+                            int rgb = colors[bx];
+                            byte red = (byte) (rgb >>> 16);
+                            byte green = (byte) (rgb >>> 8);
+                            byte blue = (byte) rgb;
+                            for (int end = Math.min(width, x + size); x < end; x++) {
+                                line[x * 3] = red;
+                                line[x * 3 + 1] = green;
+                                line[x * 3 + 2] = blue;
+                            }
+                        }
+                        // 一个块行内的各行相同
+                        int rowCount = Math.min(size, height - blockRow * size);
+                        for (int i = 0; i < rowCount; i++) {
+                            encoder.writeRow(line);
+                        }
+                    }
+                    encoder.finish();
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 处理从 from 到 to（不含）的块行，并把结果写入 output。
+     * @param source 原始图像
+     * @param output 输出像素数组，每行 width 个像素，与 source 尺寸相同
+     * @param pixelSize 像素块的边长
+     * @param mode 取色方式
+     * @param from 起始块行
+     * @param to 结束块行
+     */
+    static void renderBlockRows(BufferedImage source, int[] output, int pixelSize, Mode mode, int from, int to) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int blockColumns = (width + pixelSize - 1) / pixelSize;
+        BlockColors blocks = new BlockColors(source, pixelSize, mode);
+
+        for (int blockRow = from; blockRow < to; blockRow++) {
+            int y0 = blockRow * pixelSize;
+            int rowCount = Math.min(pixelSize, height - y0);
+            int[] colors = blocks.row(blockRow);
+
+            // 逐行写出，每个块在一行内是连续的一段
+            for (int r = 0; r < rowCount; r++) {
+                int rowStart = (y0 + r) * width;
+                for (int bx = 0; bx < blockColumns; bx++) {
+                    int x = bx * pixelSize;
+                    Arrays.fill(output, rowStart + x, rowStart + Math.min(width, x + pixelSize), colors[bx]);
+                }
+            }
+        }
+    }
+
+    // 可以直接读取的像素数组：INT_RGB / INT_ARGB 且不是子图像时返回，否则返回null
+    private static int[] directPixels(BufferedImage image) {
+        int type = image.getType();
+        if ((type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB)
+                || image.getRaster().getParent() != null
+                || !(image.getRaster().getDataBuffer() instanceof DataBufferInt)
+                || !(image.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return null;
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static int scanlineStride(BufferedImage image) {
+        return ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+    }
+
+
+    /**
+     * 计算一幅图像每个块行中各个块的颜色，同一个实例只能由一个线程使用。
+     */
+    private static class BlockColors {
+        private final BufferedImage source;
+        private final int pixelSize;
+        private final Mode mode;
+        private final int width;
+        private final int height;
+        private final int blockColumns;
+        private final int[] colors;
+        private final long[] sums;
+        // 原图是 INT_RGB / INT_ARGB 时直接读取像素数组，否则每次批量读取一个块行
+        private final int[] input;
+        private final int stride;
+        private final int[] rows;
+
+        BlockColors(BufferedImage source, int pixelSize, Mode mode) {
+            this.source = source;
+            this.pixelSize = pixelSize;
+            this.mode = mode;
+            this.width = source.getWidth();
+            this.height = source.getHeight();
+            this.blockColumns = (width + pixelSize - 1) / pixelSize;
+            this.colors = new int[blockColumns];
+            this.sums = mode == Mode.AVERAGE ? new long[blockColumns * 3] : null;
+            this.input = directPixels(source);
+            this.stride = input != null ? scanlineStride(source) : width;
+            this.rows = input != null ? null : new int[width * (mode == Mode.SAMPLE ? 1 : Math.min(pixelSize, height))];
+        }
+
+        /**
+         * @param blockRow 块行
+         * @return 各个块的颜色（RGB），下一次调用时被覆盖
+         */
+        int[] row(int blockRow) {
+            int y0 = blockRow * pixelSize;
+            int rowCount = Math.min(pixelSize, height - y0);
+            int[] pixels;
+            int base;
+            if (input != null) {
+                pixels = input;
+                base = y0 * stride;
+            } else {
+                // 取左上角颜色时只需要块的第一行
+                source.getRGB(0, y0, width, mode == Mode.SAMPLE ? 1 : rowCount, rows, 0, width);
+                pixels = rows;
+                base = 0;
+            }
+
+            if (mode == Mode.SAMPLE) {
+                for (int bx = 0; bx < blockColumns; bx++) {
+                    colors[bx] = pixels[base + bx * pixelSize] & 0xFFFFFF;
+                }
+                return colors;
+            }
+
+            Arrays.fill(sums, 0);
+            for (int r = 0; r < rowCount; r++) {
+                int offset = base + r * stride;
+                for (int bx = 0, x = 0; bx < blockColumns; bx++) {
+                    int end = Math.min(width, x + pixelSize);
+                    long red = 0;
+                    long green = 0;
+                    long blue = 0;
+                    for (; x < end; x++) {
+                        int rgb = pixels[offset + x];
+                        red += (rgb >>> 16) & 0xFF;
+                        green += (rgb >>> 8) & 0xFF;
+                        blue += rgb & 0xFF;
+                    }
+                    sums[bx * 3] += red;
+                    sums[bx * 3 + 1] += green;
+                    sums[bx * 3 + 2] += blue;
+                }
+            }
+            for (int bx = 0; bx < blockColumns; bx++) {
+                long count = (long) rowCount * Math.min(pixelSize, width - bx * pixelSize);
+                long half = count / 2;
+                int red = (int) ((sums[bx * 3] + half) / count);
+                int green = (int) ((sums[bx * 3 + 1] + half) / count);
+                int blue = (int) ((sums[bx * 3 + 2] + half) / count);
+                colors[bx] = red << 16 | green << 8 | blue;
+            }
+            return colors;
+        }
+    }
+}
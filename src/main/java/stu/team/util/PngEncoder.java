@@ -0,0 +1,235 @@
+package stu.team.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 逐行写出的PNG编码器，不需要先在内存中构造完整的 BufferedImage。
+ * 每一行按 PNG 的五种过滤方式分别计算，选择绝对值之和最小的一种（标准推荐的启发式方法）；
+ * 与上一行相同的行直接使用 Up 过滤，压缩后几乎不占空间。
+ * 压缩后的数据每满一块就作为一个 IDAT 块写出，输出是渐进的，内存占用与图片高度无关。
+ * @author crc
+ */
+public class PngEncoder implements Closeable {
+
+    // 颜色类型：灰度
+    public static final int GRAYSCALE = 0;
+    // 颜色类型：RGB
+    public static final int RGB = 2;
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    private static final int IDAT_SIZE = 65536;
+
+    private final OutputStream out;
+    private final int height;
+    private final int rowBytes;
+    // 过滤时参与比较的前一个像素的字节数，位深小于8时为1
+    private final int bytesPerPixel;
+    private final Deflater deflater;
+    private final DeflaterOutputStream idat;
+
+    private byte[] previous;
+    private byte[] filtered;
+    private byte[] best;
+    private int rows;
+
+    /**
+     * 写出PNG文件头，之后按从上到下的顺序调用 writeRow 写入每一行。
+     * @param out 输出流
+     * @param width 宽度
+     * @param height 高度
+     * @param bitDepth 位深：灰度为 1、2、4、8，RGB 为 8
+     * @param colorType 颜色类型 GRAYSCALE 或 RGB
+     * @param level 压缩级别 0-9
+     */
+    public PngEncoder(OutputStream out, int width, int height, int bitDepth, int colorType, int level)
+            throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("图片尺寸不正确: " + width + "x" + height);
+        }
+        int channels = colorType == RGB ? 3 : 1;
+        this.out = out;
+        this.height = height;
+        this.rowBytes = (int) (((long) width * channels * bitDepth + 7) / 8);
+        this.bytesPerPixel = Math.max(1, channels * bitDepth / 8);
+        this.previous = new byte[rowBytes];
+        this.filtered = new byte[rowBytes + 1];
+        this.best = new byte[rowBytes + 1];
+        this.deflater = new Deflater(level);
+        this.idat = new DeflaterOutputStream(new IdatOutputStream(), deflater, IDAT_SIZE);
+
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(bitDepth);
+        data.writeByte(colorType);
+        data.writeByte(0);
+        data.writeByte(0);
+        data.writeByte(0);
+        writeChunk(out, "IHDR", header.toByteArray(), 13);
+    }
+
+    /**
+     * @return 每一行未过滤的字节数
+     */
+    public int getRowBytes() {
+        return rowBytes;
+    }
+
+    /**
+     * 写入一行像素。位深小于8时高位在前，RGB 每个像素依次为 R、G、B。
+     * @param row 至少 getRowBytes() 个字节，写入后可以复用
+     */
+    public void writeRow(byte[] row) throws IOException {
+        if (rows >= height) {
+            throw new IllegalStateException("写入的行数超过图片高度");
+        }
+        // 与上一行相同时 Up 过滤的结果全为0，不需要再比较其它方式
+        if (rows > 0 && Arrays.equals(row, 0, rowBytes, previous, 0, rowBytes)) {
+            best[0] = 2;
+            Arrays.fill(best, 1, rowBytes + 1, (byte) 0);
+            idat.write(best, 0, rowBytes + 1);
+            rows++;
+            return;
+        }
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type <= 4; type++) {
+            long sum = filter(type, row, filtered);
+            if (sum < bestSum) {
+                bestSum = sum;
+                byte[] swap = best;
+                best = filtered;
+                filtered = swap;
+            }
+        }
+        idat.write(best, 0, rowBytes + 1);
+        System.arraycopy(row, 0, previous, 0, rowBytes);
+        rows++;
+    }
+
+    /**
+     * 写出剩余的压缩数据和文件尾。行数不足图片高度时抛出异常。
+     */
+    public void finish() throws IOException {
+        if (rows != height) {
+            throw new IllegalStateException("只写入了 " + rows + " 行，图片高度为 " + height);
+        }
+        idat.finish();
+        idat.flush();
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    // 按指定方式过滤一行，返回过滤结果（视为有符号字节）的绝对值之和
+    private long filter(int type, byte[] row, byte[] target) {
+        target[0] = (byte) type;
+        long sum = 0;
+        for (int i = 0; i < rowBytes; i++) {
+            int x = row[i] & 0xFF;
+            int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int value;
+            switch (type) {
+                case 1:
+                    value = x - a;
+                    break;
+                case 2:
+                    value = x - b;
+                    break;
+                case 3:
+                    value = x - ((a + b) >>> 1);
+                    break;
+                case 4:
+                    int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+                    value = x - paeth(a, b, c);
+                    break;
+                default:
+                    value = x;
+                    break;
+            }
+            byte filteredByte = (byte) value;
+            target[i + 1] = filteredByte;
+            sum += Math.abs(filteredByte);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        byte[] header = {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length,
+                typeBytes[0], typeBytes[1], typeBytes[2], typeBytes[3]};
+        out.write(header);
+        out.write(data, 0, length);
+        long value = crc.getValue();
+        out.write(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+
+    /**
+     * 把压缩数据分成 IDAT 块写出。
+     */
+    private class IdatOutputStream extends OutputStream {
+        private final byte[] buffer = new byte[IDAT_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flush();
+                }
+                int n = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package stu.team.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量生成二维码并写入ZIP压缩包。
+ * 输入逐行读取，每行交给线程池生成，哪一个先完成就先写入压缩包；
+ * 同时在生成的二维码不超过线程数的两倍，内存占用与批量大小无关。
+ * @author crc
+ */
+public class QrBatch {
+
+    // 同时在生成或等待写出的二维码数量上限
+    private static final int MAX_IN_FLIGHT = Workers.PARALLELISM * 2;
+    // errors.txt 中逐行记录的失败数量上限，超出的只计数
+    private static final int MAX_ERRORS = 1000;
+    // CSV 的表头，第一行与它相同（不区分大小写）时按两列解析
+    private static final String CSV_HEADER = "name,text";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 读取文本列表，把生成的二维码写入ZIP。
+     * CSV 没有表头时每行整体作为文本（URL 中的逗号不会被拆开），只有以双引号括起的文件名开头时
+     * （"文件名",文本）才拆成两列；第一行为 name,text 表头时每行按第一个不在引号内的逗号拆成文件名和文本。
+     * NDJSON 每行为 {"text": "...", "name": "..."}，name 可以省略。
+     * 压缩包中的文件名以行号开头，保证不重复；生成失败的行记录在 errors.txt 中，最多记录 MAX_ERRORS 行。
+     * @param in 输入，UTF-8 文本
+     * @param ndjson 输入是否为NDJSON，否则为CSV
+     * @param options 绘制参数
+     * @param out 输出
+     * @return 生成成功的二维码数量
+     */
+    public static int generate(InputStream in, boolean ndjson, QrCodes.Options options, OutputStream out)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ZipOutputStream zip = new ZipOutputStream(out);
+        CompletionService<Result> completion = new ExecutorCompletionService<>(Workers.CPU);
+        Errors errors = new Errors();
+        int inFlight = 0;
+        int written = 0;
+        int lineNumber = 0;
+        boolean header = false;
+        String line;
+
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (lineNumber == 1 && !ndjson && CSV_HEADER.equalsIgnoreCase(line.replace(" ", ""))) {
+                    header = true;
+                    continue;
+                }
+                String[] item;
+                try {
+                    item = ndjson ? parseJson(line) : parseCsv(line, header);
+                } catch (IOException | IllegalArgumentException e) {
+                    errors.add(lineNumber, e.getMessage());
+                    continue;
+                }
+
+                // 达到上限时等待一个完成后再提交
+                if (inFlight == MAX_IN_FLIGHT) {
+                    written += write(zip, completion.take(), errors);
+                    inFlight--;
+                }
+                int index = lineNumber;
+                completion.submit(() -> render(index, item[0], item[1], options));
+                inFlight++;
+
+                Future<Result> done;
+                while ((done = completion.poll()) != null) {
+                    written += write(zip, done, errors);
+                    inFlight--;
+                }
+            }
+            while (inFlight > 0) {
+                written += write(zip, completion.take(), errors);
+                inFlight--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("二维码生成被中断", e);
+        }
+
+        if (errors.count > 0) {
+            zip.putNextEntry(new ZipEntry("errors.txt"));
+            zip.write(errors.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+        return written;
+    }
+
+    private static Result render(int index, String name, String text, QrCodes.Options options) {
+        String entryName = String.format("%06d", index)
+                + (name == null || name.isEmpty() ? "" : "-" + sanitize(name)) + "." + options.extension();
+        try {
+            return new Result(index, entryName, QrCodes.renderUncached(text, options).getData(), null);
+        } catch (Exception e) {
+            return new Result(index, entryName, null, e.toString());
+        }
+    }
+
+    private static int write(ZipOutputStream zip, Future<Result> future, Errors errors) throws IOException {
+        Result result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("二维码生成被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("二维码生成失败: " + e.getCause(), e.getCause());
+        }
+        if (result.data == null) {
+            errors.add(result.index, result.error);
+            return 0;
+        }
+
+        ZipEntry entry = new ZipEntry(result.name);
+        // PNG 已经压缩过，直接存储；SVG 是文本，压缩效果明显
+        if (result.name.endsWith(".png")) {
+            CRC32 crc = new CRC32();
+            crc.update(result.data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(result.data.length);
+            entry.setCompressedSize(result.data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(result.data);
+        zip.closeEntry();
+        return 1;
+    }
+
+    // 文件名中去掉路径分隔符和控制字符，并限制长度
+    private static String sanitize(String name) {
+        StringBuilder sb = new StringBuilder(Math.min(name.length(), 100));
+        for (int i = 0; i < name.length() && sb.length() < 100; i++) {
+            char c = name.charAt(i);
+            sb.append(c == '/' || c == '\\' || c == ':' || Character.isISOControl(c) ? '_' : c);
+        }
+        return sb.toString();
+    }
+
+    private static String[] parseJson(String line) throws IOException {
+        JsonNode node = MAPPER.readTree(line);
+        JsonNode text = node == null ? null : node.get("text");
+        if (text == null || !text.isTextual()) {
+            throw new IllegalArgumentException("缺少 text 字段");
+        }
+        JsonNode name = node.get("name");
+        return new String[]{name == null || name.isNull() ? null : name.asText(), text.asText()};
+    }
+
+    // 没有表头时，只有以引号开头、引号后紧跟逗号的行才拆成文件名和文本
+    private static String[] parseCsv(String line, boolean header) {
+        if (!header && !quotedName(line)) {
+            return new String[]{null, line};
+        }
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',' && fields.isEmpty()) {
+                // 只按第一个逗号拆分，文本中的其它逗号原样保留
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("引号不匹配");
+        }
+        fields.add(field.toString());
+        return fields.size() == 1 ? new String[]{null, fields.get(0)} : new String[]{fields.get(0), fields.get(1)};
+    }
+
+    private static boolean quotedName(String line) {
+        if (line.isEmpty() || line.charAt(0) != '"') {
+            return false;
+        }
+        for (int i = 1; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    i++;
+                } else {
+                    return i + 1 < line.length() && line.charAt(i + 1) == ',';
+                }
+            }
+        }
+        return false;
+    }
+
+
+    // 失败的行，只保留前 MAX_ERRORS 条，内存占用与批量大小无关
+    private static class Errors {
+        private final StringBuilder lines = new StringBuilder();
+        private int count;
+
+        void add(int lineNumber, String message) {
+            if (++count <= MAX_ERRORS) {
+                lines.append(lineNumber).append(": ").append(message).append('\n');
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (count <= MAX_ERRORS) {
+                return lines.toString();
+            }
+            return lines + "... 共 " + count + " 行失败，只列出前 " + MAX_ERRORS + " 行\n";
+        }
+    }
+
+
+    private static class Result {
+        private final int index;
+        private final String name;
+        private final byte[] data;
+        private final String error;
+
+        Result(int index, String name, byte[] data, String error) {
+            this.index = index;
+            this.name = name;
+            this.data = data;
+            this.error = error;
+        }
+    }
+}
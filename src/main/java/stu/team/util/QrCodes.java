@@ -0,0 +1,182 @@
+package stu.team.util;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import jakarta.xml.bind.DatatypeConverter;
+import stu.team.constant.constant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 二维码生成及缓存。
+ * 生成的图片按文本和绘制参数缓存在内存中，总大小受 constant.QrCacheSize 限制，
+ * 重复请求同一内容只需要一次查表；每张图片带有由内容摘要生成的强ETag。
+ * @author crc
+ */
+public class QrCodes {
+
+    // 默认图片边长
+    public static final int DEFAULT_SIZE = 500;
+    // 允许的最大图片边长
+    public static final int MAX_SIZE = 4096;
+    // 默认空白宽度（模块数），与二维码标准建议的宽度一致
+    public static final int DEFAULT_MARGIN = 4;
+
+    // 权重包括键（绘制参数和文本，每个字符2字节），长文本的小图片不会让缓存实际占用的内存远超上限
+    private static final LruCache<String, Image> CACHE = new LruCache<>(constant.QrCacheSize,
+            (key, image) -> image.data.length + 2L * key.length() + 64L, null);
+
+    /**
+     * 按默认参数生成PNG格式的二维码，优先读取缓存。
+     * @param text 文本或URL
+     * @return 二维码图片
+     */
+    public static Image png(String text) throws WriterException, IOException {
+        return render(text, Options.DEFAULT);
+    }
+
+    /**
+     * 生成二维码，优先读取缓存。
+     * @param text 文本或URL
+     * @param options 绘制参数
+     * @return 二维码图片
+     */
+    public static Image render(String text, Options options) throws WriterException, IOException {
+        String key = options.key() + text;
+        Image image = CACHE.get(key);
+        if (image == null) {
+            image = renderUncached(text, options);
+            CACHE.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * 生成二维码，不读写缓存，用于批量生成等不会重复的场景。
+     * @param text 文本或URL
+     * @param options 绘制参数
+     * @return 二维码图片
+     */
+    public static Image renderUncached(String text, Options options) throws WriterException, IOException {
+        BitMatrix matrix = QrRenderer.encode(text, options.ec, options.margin);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (options.svg) {
+            QrRenderer.writeSvg(matrix, options.size, out);
+            return new Image(out.toByteArray(), "image/svg+xml");
+        }
+        QrRenderer.writePng(matrix, options.size, out);
+        return new Image(out.toByteArray(), "image/png");
+    }
+
+    /**
+     * @return 缓存的命中、未命中、淘汰次数，以及条目数和占用的字节数
+     */
+    public static Map<String, Long> stats() {
+        return CACHE.stats();
+    }
+
+
+    /**
+     * 绘制参数：输出格式、图片边长、空白宽度和纠错级别。
+     */
+    public static class Options {
+        public static final Options DEFAULT = new Options(false, DEFAULT_SIZE, DEFAULT_MARGIN, ErrorCorrectionLevel.L);
+
+        private final boolean svg;
+        private final int size;
+        private final int margin;
+        private final ErrorCorrectionLevel ec;
+
+        private Options(boolean svg, int size, int margin, ErrorCorrectionLevel ec) {
+            this.svg = svg;
+            this.size = size;
+            this.margin = margin;
+            this.ec = ec;
+        }
+
+        /**
+         * 解析并校验请求参数。
+         * @param format png 或 svg，为null时使用png
+         * @param size 图片边长
+         * @param margin 空白宽度（模块数）
+         * @param ec 纠错级别 L、M、Q、H，为null时使用L
+         */
+        public static Options parse(String format, int size, int margin, String ec) {
+            boolean svg;
+            if (format == null || format.isEmpty() || "png".equalsIgnoreCase(format)) {
+                svg = false;
+            } else if ("svg".equalsIgnoreCase(format)) {
+                svg = true;
+            } else {
+                throw new IllegalArgumentException("不支持的格式: " + format);
+            }
+            if (size < 1 || size > MAX_SIZE) {
+                throw new IllegalArgumentException("图片边长应在 1 到 " + MAX_SIZE + " 之间");
+            }
+            if (margin < 0 || margin > 64) {
+                throw new IllegalArgumentException("空白宽度应在 0 到 64 之间");
+            }
+            ErrorCorrectionLevel level;
+            try {
+                level = ec == null || ec.isEmpty() ? ErrorCorrectionLevel.L : ErrorCorrectionLevel.valueOf(ec.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("不支持的纠错级别: " + ec);
+            }
+            return new Options(svg, size, margin, level);
+        }
+
+        /**
+         * @return 输出格式对应的文件扩展名
+         */
+        public String extension() {
+            return svg ? "svg" : "png";
+        }
+
+        String key() {
+            return extension() + ':' + size + ':' + margin + ':' + ec + ':';
+        }
+    }
+
+
+    /**
+     * 生成好的二维码图片，内容不可修改。
+     */
+    public static class Image {
+        private final byte[] data;
+        private final String contentType;
+        private final String etag;
+
+        public Image(byte[] data, String contentType) {
+            this.data = data;
+            this.contentType = contentType;
+            this.etag = "\"" + digest(data) + "\"";
+        }
+
+        private static String digest(byte[] data) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+                return DatatypeConverter.printHexBinary(Arrays.copyOf(hash, 16)).toLowerCase();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package stu.team.util;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 识别图片中的二维码和条形码。
+ * 先用开销最小的全局直方图二值化识别，失败后依次改用局部自适应二值化、再加上 TRY_HARDER，
+ * 清晰的图片在第一步就能识别，只有难识别的图片才付出更多计算；
+ * 过大的照片在解码时按整数倍抽样读取，不在内存中展开原图，再平滑缩小到识别所需的尺寸
+ * （只抽样不平滑时，照片中的噪点会被保留下来，影响识别）。
+ * @author crc
+ */
+public class QrDecoder {
+
+    // 识别前图片的最大边长，更大的图片抽样缩小
+    private static final int MAX_DIMENSION = 2048;
+
+    private static final Map<DecodeHintType, Object> FAST_HINTS = hints(false);
+    private static final Map<DecodeHintType, Object> HARD_HINTS = hints(true);
+
+    /**
+     * 读取并识别图片。
+     * @param in 图片数据
+     * @return 识别结果：text、format、pass（识别成功的步骤）、width、height、scale（缩小的倍数）
+     * @throws NotFoundException 图片中没有可识别的二维码或条形码
+     * @throws IOException 无法读取图片
+     */
+    public static Map<String, Object> decode(InputStream in) throws IOException, NotFoundException {
+        int width;
+        int height;
+        int subsampling;
+        BufferedImage image;
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法识别的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                // 抽样后的尺寸不超过目标的两倍，留给后面的平滑缩小
+                subsampling = Math.max(1, Math.max(width, height) / (MAX_DIMENSION * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest > MAX_DIMENSION) {
+            double ratio = (double) MAX_DIMENSION / longest;
+            int w = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+            int h = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+            BufferedImage scaled = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, w, h, null);
+            g.dispose();
+            image = scaled;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        LuminanceSource source = new BufferedImageLuminanceSource(image);
+        String pass = "global";
+        Result result = tryDecode(new BinaryBitmap(new GlobalHistogramBinarizer(source)), FAST_HINTS);
+        if (result == null) {
+            pass = "hybrid";
+            result = tryDecode(new BinaryBitmap(new HybridBinarizer(source)), FAST_HINTS);
+        }
+        if (result == null) {
+            pass = "tryHarder";
+            result = tryDecode(new BinaryBitmap(new HybridBinarizer(source)), HARD_HINTS);
+        }
+        if (result == null) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+
+        response.put("text", result.getText());
+        response.put("format", result.getBarcodeFormat().toString());
+        response.put("pass", pass);
+        response.put("width", width);
+        response.put("height", height);
+        response.put("scale", Math.round((double) Math.max(width, height) / Math.max(image.getWidth(), image.getHeight()) * 100) / 100.0);
+        return response;
+    }
+
+    private static Result tryDecode(BinaryBitmap bitmap, Map<DecodeHintType, Object> hints) {
+        try {
+            // MultiFormatReader 有内部状态，每次识别使用新的实例
+            return new MultiFormatReader().decode(bitmap, hints);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Map<DecodeHintType, Object> hints(boolean tryHarder) {
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        return hints;
+    }
+}
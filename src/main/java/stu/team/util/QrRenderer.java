@@ -0,0 +1,119 @@
+package stu.team.util;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 把二维码的模块矩阵直接绘制成PNG或SVG，不经过 BufferedImage 和 ImageIO。
+ * PNG 为每像素1位的灰度图，一个模块放大后的各行相同，经过 Up 过滤后几乎不占空间；
+ * SVG 按行把连续的黑色模块合并成一个矩形路径。
+ * @author crc
+ */
+public class QrRenderer {
+
+    // QRCodeWriter 没有状态，可以被多个线程共用
+    private static final QRCodeWriter WRITER = new QRCodeWriter();
+
+    /**
+     * 编码文本，得到每个模块占一个点的矩阵，矩阵四周包含 margin 个模块宽的空白。
+     * @param text 文本
+     * @param ec 纠错级别
+     * @param margin 空白宽度（模块数）
+     */
+    public static BitMatrix encode(String text, ErrorCorrectionLevel ec, int margin) throws WriterException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.ERROR_CORRECTION, ec);
+        hints.put(EncodeHintType.MARGIN, margin);
+        // 宽高为0时返回最小尺寸的矩阵
+        return WRITER.encode(text, BarcodeFormat.QR_CODE, 0, 0, hints);
+    }
+
+    /**
+     * 输出PNG。模块按整数倍放大，剩余的空间均匀留在四周；size 小于矩阵尺寸时按矩阵尺寸输出。
+     * @param matrix 模块矩阵
+     * @param size 图片边长
+     * @param out 输出流
+     */
+    public static void writePng(BitMatrix matrix, int size, OutputStream out) throws IOException {
+        int modules = matrix.getWidth();
+        int scale = Math.max(1, size / modules);
+        int imageSize = Math.max(size, modules * scale);
+        int padding = (imageSize - modules * scale) / 2;
+
+        try (PngEncoder encoder = new PngEncoder(out, imageSize, imageSize, 1, PngEncoder.GRAYSCALE, 9)) {
+            // 1 为白色，0 为黑色
+            byte[] blank = new byte[encoder.getRowBytes()];
+            Arrays.fill(blank, (byte) 0xFF);
+            byte[] row = new byte[encoder.getRowBytes()];
+
+            for (int y = 0; y < padding; y++) {
+                encoder.writeRow(blank);
+            }
+            for (int my = 0; my < modules; my++) {
+                System.arraycopy(blank, 0, row, 0, row.length);
+                for (int mx = 0; mx < modules; mx++) {
+                    if (matrix.get(mx, my)) {
+                        int from = padding + mx * scale;
+                        for (int x = from; x < from + scale; x++) {
+                            row[x >>> 3] &= (byte) ~(0x80 >>> (x & 7));
+                        }
+                    }
+                }
+                for (int i = 0; i < scale; i++) {
+                    encoder.writeRow(row);
+                }
+            }
+            for (int y = padding + modules * scale; y < imageSize; y++) {
+                encoder.writeRow(blank);
+            }
+            encoder.finish();
+        }
+    }
+
+    /**
+     * 输出SVG。矢量图可以任意缩放，size 只决定默认显示尺寸。
+     * @param matrix 模块矩阵
+     * @param size 显示边长（像素）
+     * @param out 输出流
+     */
+    public static void writeSvg(BitMatrix matrix, int size, OutputStream out) throws IOException {
+        int modules = matrix.getWidth();
+        StringBuilder svg = new StringBuilder(modules * modules / 2 + 256);
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(size)
+                .append("\" height=\"").append(size)
+                .append("\" viewBox=\"0 0 ").append(modules).append(' ').append(modules)
+                .append("\" shape-rendering=\"crispEdges\">")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+                .append("<path fill=\"#000\" d=\"");
+        for (int y = 0; y < modules; y++) {
+            int x = 0;
+            while (x < modules) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < modules && matrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(start).append(' ').append(y)
+                        .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        svg.append("\"/></svg>\n");
+        out.write(svg.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
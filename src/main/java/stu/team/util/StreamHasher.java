@@ -0,0 +1,188 @@
+package stu.team.util;
+
+import jakarta.xml.bind.DatatypeConverter;
+import stu.team.constant.constant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * 一次读取、同时计算多种摘要和校验和。
+ * 支持 MessageDigest 的所有算法（MD5、SHA-256、SHA3-256 等），以及 CRC32、CRC32C、Adler32 校验和。
+ * 输入按固定大小的缓冲区读取，内存占用与输入大小无关。
+ * @author crc
+ */
+public class StreamHasher {
+
+    private final String[] algorithms;
+    private final Sink[] sinks;
+
+    /**
+     * @param algorithms 算法名称，"SHA-3" 是 "SHA3-256" 的别名
+     */
+    public StreamHasher(String... algorithms) throws NoSuchAlgorithmException {
+        this.algorithms = algorithms;
+        this.sinks = new Sink[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            sinks[i] = newSink(algorithms[i]);
+        }
+    }
+
+    /**
+     * 把一段数据送入所有算法。
+     */
+    public void update(byte[] bytes, int offset, int length) {
+        for (Sink sink : sinks) {
+            sink.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * @return 算法名称 -> 大写十六进制结果，顺序与构造时一致
+     */
+    public Map<String, String> digests() {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < algorithms.length; i++) {
+            result.put(algorithms[i], sinks[i].result());
+        }
+        return result;
+    }
+
+    /**
+     * 读取输入流并计算摘要。
+     * 并行模式下使用两块缓冲区交替读取：一块由线程池中的各个算法同时处理，另一块同时读取下一段数据。
+     *
+     * @param in 输入流
+     * @param parallel 是否并行计算
+     * @param algorithms 算法名称
+     * @return 算法名称 -> 大写十六进制结果
+     */
+    public static Map<String, String> hash(InputStream in, boolean parallel, String... algorithms)
+            throws IOException, NoSuchAlgorithmException {
+        StreamHasher hasher = new StreamHasher(algorithms);
+        if (!parallel || algorithms.length < 2) {
+            byte[] buffer = new byte[constant.TransferBufferSize];
+            int n;
+            while ((n = readFully(in, buffer)) > 0) {
+                hasher.update(buffer, 0, n);
+            }
+            return hasher.digests();
+        }
+
+        byte[][] buffers = {new byte[constant.TransferBufferSize], new byte[constant.TransferBufferSize]};
+        Future<?>[] pending = null;
+        int current = 0;
+        int n;
+        while ((n = readFully(in, buffers[current])) > 0) {
+            // 等上一块处理完，保证每个算法按顺序处理数据，也让上一块缓冲区可以被复用
+            await(pending);
+            pending = new Future<?>[hasher.sinks.length];
+            byte[] buffer = buffers[current];
+            int length = n;
+            for (int i = 0; i < hasher.sinks.length; i++) {
+                Sink sink = hasher.sinks[i];
+                pending[i] = Workers.CPU.submit(() -> sink.update(buffer, 0, length));
+            }
+            current ^= 1;
+        }
+        await(pending);
+        return hasher.digests();
+    }
+
+    private static void await(Future<?>[] pending) throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("哈希计算被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("哈希计算失败: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // 尽量读满缓冲区，减少并行模式下的任务数量
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int n = in.read(buffer, total, buffer.length - total);
+            if (n == -1) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static Sink newSink(String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm.toUpperCase()) {
+            case "CRC32":
+                return new ChecksumSink(new CRC32());
+            case "CRC32C":
+                return new ChecksumSink(new CRC32C());
+            case "ADLER32":
+                return new ChecksumSink(new Adler32());
+            case "SHA-3":
+                return new DigestSink(MessageDigest.getInstance("SHA3-256"));
+            default:
+                return new DigestSink(MessageDigest.getInstance(algorithm));
+        }
+    }
+
+
+    private interface Sink {
+        void update(byte[] bytes, int offset, int length);
+
+        String result();
+    }
+
+    private static class DigestSink implements Sink {
+        private final MessageDigest digest;
+
+        DigestSink(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+
+        @Override
+        public String result() {
+            return DatatypeConverter.printHexBinary(digest.digest()).toUpperCase();
+        }
+    }
+
+    private static class ChecksumSink implements Sink {
+        private final Checksum checksum;
+
+        ChecksumSink(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        public String result() {
+            return String.format("%08X", checksum.getValue());
+        }
+    }
+}
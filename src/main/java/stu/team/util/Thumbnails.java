@@ -0,0 +1,330 @@
+package stu.team.util;
+
+import jakarta.xml.bind.DatatypeConverter;
+import stu.team.constant.constant;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 图片缩略图生成和磁盘缓存。
+ * 每个缩略图只生成一次并保存在 constant.ThumbnailUrl 下，磁盘占用超过上限时按LRU淘汰，
+ * 被淘汰的文件延迟 constant.ThumbnailEvictionDelay 后才删除，不影响已经拿到路径的请求；
+ * 同一个缩略图的并发请求会合并，只有一个请求负责生成。
+ * @author crc
+ */
+public class Thumbnails {
+
+    /**
+     * 缩放方式。
+     */
+    public enum Fit {
+        // 等比缩放到目标尺寸以内
+        CONTAIN,
+        // 等比缩放到铺满目标尺寸，超出部分居中裁剪
+        COVER,
+        // 拉伸到目标尺寸
+        FILL;
+
+        public static Fit parse(String fit) {
+            if (fit == null || fit.isEmpty()) {
+                return CONTAIN;
+            }
+            try {
+                return valueOf(fit.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("无效的缩放方式: " + fit + "，可选 contain、cover、fill");
+            }
+        }
+    }
+
+    private static final Path CACHE_DIR = Paths.get(constant.ThumbnailUrl);
+
+    // 延迟删除被淘汰的缩略图
+    private static final ScheduledExecutorService CLEANER =
+            Executors.newSingleThreadScheduledExecutor(Workers.daemonThreads("thumbnail-cleaner"));
+
+    // 缓存文件名 -> 文件大小，淘汰时延迟删除对应文件
+    private static final LruCache<String, Long> CACHE = new LruCache<>(constant.ThumbnailCacheSize, Long::longValue,
+            (name, size) -> CLEANER.schedule(() -> delete(name), constant.ThumbnailEvictionDelay, TimeUnit.MILLISECONDS));
+
+    // 生成的缩略图改名并登记、以及延迟删除都在这个锁下进行，删除时不会删掉刚重新生成的同名文件
+    private static final Object FILES = new Object();
+
+    // 正在生成的缩略图，用于合并同一缩略图的并发请求
+    private static final Map<String, CompletableFuture<Path>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    static {
+        // 启动时删除上次运行遗留的临时文件，把已有的缓存文件按修改时间登记到LRU中
+        try {
+            Files.createDirectories(CACHE_DIR);
+            try (Stream<Path> files = Files.list(CACHE_DIR)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".tmp"))
+                        .forEach(file -> delete(file.getFileName().toString()));
+            }
+            try (Stream<Path> files = Files.list(CACHE_DIR)) {
+                files.filter(Files::isRegularFile)
+                        .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                        .sorted(Comparator.comparingLong(Thumbnails::lastModified))
+                        .forEach(file -> CACHE.put(file.getFileName().toString(), size(file)));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 获取原图的缩略图，缓存中不存在时生成。
+     * @param source 原图路径
+     * @param width 目标宽度，0表示按高度等比计算
+     * @param height 目标高度，0表示按宽度等比计算
+     * @param fit 缩放方式
+     * @return 缩略图文件路径
+     * @throws IllegalArgumentException 尺寸不正确，或原图不是可以解码的图片
+     * @throws ImageConverter.ImageTooLargeException 原图解码后的像素数超过 constant.MaxConvertPixels
+     * @throws java.util.concurrent.RejectedExecutionException 图片任务过多，等待超时
+     */
+    @SuppressWarnings("try")
+    public static Path thumbnail(Path source, int width, int height, Fit fit) throws IOException {
+        if (width < 0 || height < 0 || (width == 0 && height == 0)
+                || width > constant.MaxThumbnailSize || height > constant.MaxThumbnailSize) {
+            throw new IllegalArgumentException("缩略图尺寸必须在 1 到 " + constant.MaxThumbnailSize + " 之间");
+        }
+        FileMeta sourceMeta = FileMetaCache.get(source);
+        if (sourceMeta == null) {
+            throw new NoSuchFileException(source.getFileName().toString());
+        }
+
+        // 原图变化后缓存键随之变化，旧的缩略图由LRU自然淘汰
+        String format = "image/jpeg".equals(sourceMeta.getContentType()) ? "jpg" : "png";
+        String name = cacheName(source.getFileName() + "|" + sourceMeta.getSize() + "|"
+                + sourceMeta.getLastModified() + "|" + width + "x" + height + "|" + fit) + "." + format;
+        Path cached = CACHE_DIR.resolve(name);
+        if (CACHE.get(name) != null) {
+            if (FileMetaCache.get(cached) != null) {
+                return cached;
+            }
+            // 文件被外部删除，重新生成
+            CACHE.remove(name);
+        }
+
+        CompletableFuture<Path> task = new CompletableFuture<>();
+        CompletableFuture<Path> running = IN_FLIGHT.putIfAbsent(name, task);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            if (!CACHE.containsKey(name)) {
+                // 不同尺寸的请求无法合并，解码受 constant.MaxImageJobs 限制
+                Path temp;
+                try (ImageJobs.Permit permit = ImageJobs.acquire()) {
+                    temp = render(source, width, height, fit, format);
+                }
+                try {
+                    synchronized (FILES) {
+                        Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        CACHE.put(name, Files.size(cached));
+                    }
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            task.complete(cached);
+            return cached;
+        } catch (IOException | RuntimeException ex) {
+            task.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            IN_FLIGHT.remove(name, task);
+        }
+    }
+
+    /**
+     * @return 缓存命中统计
+     */
+    public static Map<String, Long> stats() {
+        return CACHE.stats();
+    }
+
+    private static Path await(CompletableFuture<Path> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * 解码原图并缩放。原图远大于目标尺寸时在解码阶段先做子采样，减少解码的像素数量；
+     * 与格式转换相同，解码后的像素数不超过 constant.MaxConvertPixels。
+     * @return 缓存目录下写好缩略图的临时文件，由调用方改名为最终的缓存文件
+     */
+    private static Path render(Path source, int width, int height, Fit fit, String format)
+            throws IOException {
+        BufferedImage original;
+        int[] scaled;
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("不支持的图片格式: " + source.getFileName());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                scaled = scaledSize(sourceWidth, sourceHeight, width, height, fit);
+
+                // 保留至少两倍目标尺寸的像素，再由双线性插值缩小，兼顾速度和质量；
+                // 解码后仍超过上限时在不小于目标尺寸的前提下加大抽样间隔
+                int subsampling = Math.max(1, Math.min(sourceWidth / (scaled[0] * 2), sourceHeight / (scaled[1] * 2)));
+                int maxSubsampling = Math.max(1, Math.min(sourceWidth / scaled[0], sourceHeight / scaled[1]));
+                while (subsampling < maxSubsampling
+                        && decodedPixels(sourceWidth, sourceHeight, subsampling) > constant.MaxConvertPixels) {
+                    subsampling++;
+                }
+                if (decodedPixels(sourceWidth, sourceHeight, subsampling) > constant.MaxConvertPixels) {
+                    throw new ImageConverter.ImageTooLargeException("图片尺寸 " + sourceWidth + "x" + sourceHeight
+                            + " 超过限制，无法生成缩略图");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                original = reader.read(0, param);
+            } catch (IIOException ex) {
+                // 格式能识别但内容损坏
+                throw new IllegalArgumentException("无法解码图片 " + source.getFileName() + ": " + ex.getMessage(), ex);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        int outputWidth = fit == Fit.COVER && width > 0 ? Math.min(width, scaled[0]) : scaled[0];
+        int outputHeight = fit == Fit.COVER && height > 0 ? Math.min(height, scaled[1]) : scaled[1];
+
+        boolean jpeg = "jpg".equals(format);
+        BufferedImage thumbnail = new BufferedImage(outputWidth, outputHeight,
+                jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (jpeg) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, outputWidth, outputHeight);
+            }
+            // COVER 模式下居中裁剪
+            int x = (outputWidth - scaled[0]) / 2;
+            int y = (outputHeight - scaled[1]) / 2;
+            g.drawImage(original, x, y, scaled[0], scaled[1], null);
+        } finally {
+            g.dispose();
+        }
+
+        // 先写临时文件再改名，其它请求不会读到写了一半的缩略图
+        Path temp = Files.createTempFile(CACHE_DIR, "thumb", ".tmp");
+        try {
+            if (!ImageIO.write(thumbnail, jpeg ? "jpeg" : "png", temp.toFile())) {
+                throw new IOException("无法写入缩略图: " + format);
+            }
+            return temp;
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    private static long decodedPixels(int width, int height, int subsampling) {
+        return (long) ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+    }
+
+    /**
+     * 计算缩放后的尺寸，不放大原图。
+     * @return [缩放后宽度, 缩放后高度]
+     */
+    static int[] scaledSize(int sourceWidth, int sourceHeight, int width, int height, Fit fit) {
+        double scaleX = width > 0 ? (double) width / sourceWidth : (double) height / sourceHeight;
+        double scaleY = height > 0 ? (double) height / sourceHeight : scaleX;
+        if (fit == Fit.FILL) {
+            return new int[]{
+                    Math.max(1, (int) Math.round(sourceWidth * Math.min(scaleX, 1))),
+                    Math.max(1, (int) Math.round(sourceHeight * Math.min(scaleY, 1)))};
+        }
+        double scale = fit == Fit.COVER ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        scale = Math.min(scale, 1);
+        return new int[]{
+                Math.max(1, (int) Math.round(sourceWidth * scale)),
+                Math.max(1, (int) Math.round(sourceHeight * scale))};
+    }
+
+    private static String cacheName(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return DatatypeConverter.printHexBinary(hash).substring(0, 32).toLowerCase();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void delete(String name) {
+        synchronized (FILES) {
+            // 延迟期间又被重新生成并登记的缩略图不删除
+            if (CACHE.containsKey(name)) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(CACHE_DIR.resolve(name));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
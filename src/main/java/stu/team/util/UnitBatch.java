@@ -0,0 +1,199 @@
+package stu.team.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * 批量单位换算。
+ * 数值保存在 double 数组中，在基本类型的循环里换算，不装箱；数量较多时按线程数切分，在线程池中并行换算。
+ * 每个值的计算步骤与单个换算接口相同（先换算成基准单位，再换算成目标单位），结果完全一致。
+ * @author crc
+ */
+public class UnitBatch {
+
+    // 逐行输入时每批处理的行数
+    private static final int BATCH_SIZE = 65536;
+    // 数量超过该值时并行换算，太少时任务调度的开销超过计算本身
+    private static final int PARALLEL_THRESHOLD = 65536;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 换算JSON数组中的数值，以JSON写出。
+     * 只有一个目标单位时输出数组，否则输出 {"单位名称": [...], ...}；NaN 和无穷大写为 null。
+     * @param in 输入，数值组成的JSON数组
+     * @param out 输出
+     * @param from 当前单位
+     * @param targets 目标单位
+     * @return 换算的数值个数
+     */
+    public static int convertJson(InputStream in, OutputStream out, Units.Unit from, Units.Unit[] targets)
+            throws IOException {
+        double[] values = MAPPER.readValue(in, double[].class);
+        if (values == null) {
+            throw new IllegalArgumentException("请求体应为数值组成的JSON数组");
+        }
+        double[][] results = convert(values, values.length, from, targets);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        StringBuilder sb = new StringBuilder(1 << 16);
+        if (targets.length > 1) {
+            writer.write('{');
+        }
+        for (int t = 0; t < targets.length; t++) {
+            if (targets.length > 1) {
+                writer.write(t > 0 ? ",\"" : "\"");
+                writer.write(targets[t].getName());
+                writer.write("\":");
+            }
+            writer.write('[');
+            double[] result = results[t];
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                if (Double.isFinite(result[i])) {
+                    sb.append(result[i]);
+                } else {
+                    sb.append("null");
+                }
+                if (sb.length() >= 1 << 16) {
+                    writer.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            writer.append(sb);
+            sb.setLength(0);
+            writer.write(']');
+        }
+        if (targets.length > 1) {
+            writer.write('}');
+        }
+        writer.flush();
+        return values.length;
+    }
+
+    /**
+     * 逐行读取数值并逐行写出结果，输入可以任意长，内存中只保留一批。
+     * 每行一个数值，空行被跳过；有多个目标单位时每行的结果按目标单位的顺序以逗号分隔。
+     * @param in 输入，UTF-8 文本
+     * @param out 输出
+     * @param from 当前单位
+     * @param targets 目标单位
+     * @return 换算的数值个数
+     * @throws IllegalArgumentException 某一行不是数值
+     */
+    public static long convertLines(InputStream in, OutputStream out, Units.Unit from, Units.Unit[] targets)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        double[] values = new double[BATCH_SIZE];
+        StringBuilder sb = new StringBuilder(1 << 16);
+        long lineNumber = 0;
+        long count = 0;
+        String line;
+        boolean eof = false;
+        while (!eof) {
+            int size = 0;
+            while (size < BATCH_SIZE) {
+                line = reader.readLine();
+                if (line == null) {
+                    eof = true;
+                    break;
+                }
+                lineNumber++;
+                String text = line.trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                try {
+                    values[size++] = Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("第 " + lineNumber + " 行不是数值: " + text);
+                }
+            }
+
+            double[][] results = convert(values, size, from, targets);
+            for (int i = 0; i < size; i++) {
+                for (int t = 0; t < targets.length; t++) {
+                    if (t > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(results[t][i]);
+                }
+                sb.append('\n');
+                if (sb.length() >= 1 << 16) {
+                    writer.append(sb);
+                    sb.setLength(0);
+                }
+            }
+            count += size;
+        }
+        writer.append(sb);
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * 换算数组中前 length 个数值。
+     * @param values 数值
+     * @param length 数值个数
+     * @param from 当前单位
+     * @param targets 目标单位
+     * @return 每个目标单位的结果
+     */
+    public static double[][] convert(double[] values, int length, Units.Unit from, Units.Unit[] targets) {
+        double[] base = new double[length];
+        double[][] results = new double[targets.length][length];
+        if (length < PARALLEL_THRESHOLD || Workers.PARALLELISM == 1) {
+            convertRange(values, base, results, from, targets, 0, length);
+            return results;
+        }
+
+        int step = (length + Workers.PARALLELISM - 1) / Workers.PARALLELISM;
+        List<Future<?>> futures = new ArrayList<>(Workers.PARALLELISM);
+        for (int start = 0; start < length; start += step) {
+            int begin = start;
+            int end = Math.min(length, start + step);
+            futures.add(Workers.CPU.submit(() -> convertRange(values, base, results, from, targets, begin, end)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("单位换算被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("单位换算失败: " + e.getCause(), e.getCause());
+        }
+        return results;
+    }
+
+    private static void convertRange(double[] values, double[] base, double[][] results,
+                                     Units.Unit from, Units.Unit[] targets, int start, int end) {
+        for (int i = start; i < end; i++) {
+            base[i] = from.toBase(values[i]);
+        }
+        for (int t = 0; t < targets.length; t++) {
+            Units.Unit target = targets[t];
+            double[] result = results[t];
+            for (int i = start; i < end; i++) {
+                result[i] = target.fromBase(base[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package stu.team.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 复合单位表达式的换算，例如 km/h -> m/s、kg*m/s^2 -> N、MiB/s -> Mbit/s。
+ * 表达式解析为一个系数和一个量纲向量（长度、质量、时间、电流、温度、物质的量、发光强度、信息量的指数），
+ * 两个表达式的量纲相同才能换算，换算系数为两边系数之比。
+ * 十进制前缀单独记为10的指数，最后才乘到系数上，µm -> nm 这类换算得到精确的 1000 而不是 999.9999999999999。
+ * 编译好的换算按去掉首尾空格的 (原单位, 目标单位) 缓存在LRU缓存中，重复的查询不需要再解析。
+ * 单位符号区分大小写（m 和 M、Mbit 和 MB 含义不同）；°C、°F 这类有零点偏移的温度单位只能单独使用，
+ * 按 Units 中的温度换算表换算，结果与 /temperature 接口一致。
+ * @author crc
+ */
+public class UnitExpression {
+
+    // 量纲的名称，顺序与量纲向量一致
+    private static final String[] DIMENSIONS = {"m", "kg", "s", "A", "K", "mol", "cd", "bit"};
+    private static final int L = 0, M = 1, T = 2, I = 3, TEMP = 4, N = 5, J = 6, INFO = 7;
+
+    // 缓存的换算数量上限，超过后淘汰最久未使用的换算，避免任意字符串撑大缓存
+    private static final int MAX_CACHED = 4096;
+
+    // 指数的绝对值上限，实际的单位用不到这么大的指数
+    private static final int MAX_POWER = 32;
+
+    // 10^0 到 10^22，都能用 double 精确表示
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final Map<String, Atom> ATOMS = new HashMap<>();
+    // SI 前缀到10的指数
+    private static final Map<String, Integer> SI_PREFIXES = new HashMap<>();
+    private static final Map<String, Double> BINARY_PREFIXES = new HashMap<>();
+    // 可以使用二进制前缀（Ki、Mi 等）的单位
+    private static final Set<String> BINARY_UNITS = new HashSet<>();
+    // 可以单独使用的温度单位，对应 Units 温度表中的单位
+    private static final Map<String, String> TEMPERATURES = new HashMap<>();
+    private static final LruCache<String, Conversion> COMPILED = new LruCache<>(MAX_CACHED);
+
+    static {
+        String[] si = {"Y", "Z", "E", "P", "T", "G", "M", "k", "h", "da", "d", "c", "m", "u", "µ", "n", "p", "f", "a"};
+        int[] exponents = {24, 21, 18, 15, 12, 9, 6, 3, 2, 1, -1, -2, -3, -6, -6, -9, -12, -15, -18};
+        for (int i = 0; i < si.length; i++) {
+            SI_PREFIXES.put(si[i], exponents[i]);
+        }
+        BINARY_PREFIXES.put("Ki", 1024.0);
+        BINARY_PREFIXES.put("Mi", 1048576.0);
+        BINARY_PREFIXES.put("Gi", 1073741824.0);
+        BINARY_PREFIXES.put("Ti", 1099511627776.0);
+        BINARY_PREFIXES.put("Pi", 1125899906842624.0);
+
+        // 基本单位
+        atom("m", 1, true, L, 1);
+        atom("g", 1e-3, true, M, 1);
+        atom("s", 1, true, T, 1);
+        atom("A", 1, true, I, 1);
+        atom("K", 1, true, TEMP, 1);
+        atom("mol", 1, true, N, 1);
+        atom("cd", 1, true, J, 1);
+        // 先登记允许二进制前缀的单位，atom 创建时读取
+        binary("bit", "B");
+        atom("bit", 1, true, INFO, 1);
+        atom("B", 8, true, INFO, 1);
+        // 时间
+        atom("min", 60, false, T, 1);
+        atom("h", 3600, false, T, 1);
+        atom("d", 86400, false, T, 1);
+        // 导出单位
+        atom("Hz", 1, true, T, -1);
+        atom("N", 1, true, M, 1, L, 1, T, -2);
+        atom("Pa", 1, true, M, 1, L, -1, T, -2);
+        atom("J", 1, true, M, 1, L, 2, T, -2);
+        atom("W", 1, true, M, 1, L, 2, T, -3);
+        atom("Wh", 3600, true, M, 1, L, 2, T, -2);
+        atom("C", 1, true, I, 1, T, 1);
+        atom("V", 1, true, M, 1, L, 2, T, -3, I, -1);
+        atom("ohm", 1, true, M, 1, L, 2, T, -3, I, -2);
+        atom("Ω", 1, true, M, 1, L, 2, T, -3, I, -2);
+        atom("L", 1e-3, true, L, 3);
+        atom("l", 1e-3, true, L, 3);
+        atom("t", 1000, false, M, 1);
+        atom("ha", 1e4, false, L, 2);
+        atom("bar", 1e5, true, M, 1, L, -1, T, -2);
+        atom("atm", 101325, false, M, 1, L, -1, T, -2);
+        atom("Torr", 101325.0 / 760, false, M, 1, L, -1, T, -2);
+        atom("mmHg", 133.322387415, false, M, 1, L, -1, T, -2);
+        atom("psi", 6894.757293168361, false, M, 1, L, -1, T, -2);
+        atom("cal", 4.184, true, M, 1, L, 2, T, -2);
+        atom("eV", 1.602176634e-19, true, M, 1, L, 2, T, -2);
+        // 英制单位
+        atom("in", 0.0254, false, L, 1);
+        atom("ft", 0.3048, false, L, 1);
+        atom("yd", 0.9144, false, L, 1);
+        atom("mi", 1609.344, false, L, 1);
+        atom("nmi", 1852, false, L, 1);
+        atom("lb", 0.45359237, false, M, 1);
+        atom("oz", 0.028349523125, false, M, 1);
+        atom("gal", 0.003785411784, false, L, 3);
+        atom("mph", 0.44704, false, L, 1, T, -1);
+        atom("kn", 1852.0 / 3600, false, L, 1, T, -1);
+        // 温度：兰氏度没有零点偏移，可以用于复合单位
+        atom("°R", 5.0 / 9, false, TEMP, 1);
+        atom("degR", 5.0 / 9, false, TEMP, 1);
+        TEMPERATURES.put("K", "K");
+        TEMPERATURES.put("°C", "C");
+        TEMPERATURES.put("degC", "C");
+        TEMPERATURES.put("°F", "F");
+        TEMPERATURES.put("degF", "F");
+        TEMPERATURES.put("°R", "Ra");
+        TEMPERATURES.put("degR", "Ra");
+    }
+
+    /**
+     * 编译从 from 到 to 的换算，优先读取缓存。
+     * @param from 原单位表达式
+     * @param to 目标单位表达式
+     * @throws IllegalArgumentException 表达式无法解析或两边量纲不同
+     */
+    public static Conversion compile(String from, String to) {
+        String source = from == null ? "" : from.trim();
+        String target = to == null ? "" : to.trim();
+        String key = source + '\u0000' + target;
+        Conversion conversion = COMPILED.get(key);
+        if (conversion != null) {
+            return conversion;
+        }
+        String fromTemperature = TEMPERATURES.get(source);
+        String toTemperature = TEMPERATURES.get(target);
+        if (fromTemperature != null && toTemperature != null) {
+            Units.Quantity temperature = Units.quantity("temperature");
+            conversion = new Conversion(temperature.unit(fromTemperature), temperature.unit(toTemperature));
+        } else {
+            conversion = new Conversion(parse(source), parse(target));
+        }
+        return COMPILED.putIfAbsent(key, conversion);
+    }
+
+    /**
+     * 解析单位表达式。语法：因子之间用 *、· 或空格表示相乘，/ 表示相除，可以用括号；
+     * 因子为带前缀的单位、数字或括号中的表达式，后面可以跟 ^指数，如 m^-1、10^3；
+     * 单位和括号后面也可以直接跟正整数指数，如 m2。指数的绝对值不超过 32。
+     * @param expression 表达式
+     * @return 系数和量纲
+     * @throws IllegalArgumentException 表达式无法解析
+     */
+    static Parsed parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("单位表达式为空");
+        }
+        Parser parser = new Parser(expression.trim());
+        Parsed parsed = parser.expression();
+        if (parser.pos < parser.text.length()) {
+            throw parser.error("无法识别的字符 '" + parser.text.charAt(parser.pos) + "'");
+        }
+        return parsed;
+    }
+
+    /**
+     * @return 缓存的换算数量
+     */
+    public static int cachedCount() {
+        return COMPILED.size();
+    }
+
+    // 把量纲向量格式化为 kg·m·s^-2 这样的形式，无量纲时返回 1
+    static String format(int[] dimension) {
+        StringBuilder sb = new StringBuilder();
+        for (int i : new int[]{M, L, T, I, TEMP, N, J, INFO}) {
+            if (dimension[i] == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('·');
+            }
+            sb.append(DIMENSIONS[i]);
+            if (dimension[i] != 1) {
+                sb.append('^').append(dimension[i]);
+            }
+        }
+        return sb.length() == 0 ? "1" : sb.toString();
+    }
+
+    private static void atom(String symbol, double scale, boolean prefixable, int... exponents) {
+        int[] dimension = new int[DIMENSIONS.length];
+        for (int i = 0; i < exponents.length; i += 2) {
+            dimension[exponents[i]] = exponents[i + 1];
+        }
+        // 10的整数次幂记为指数，其它系数原样保存
+        int exponent = (int) Math.round(Math.log10(scale));
+        boolean decimal = pow10(exponent) == scale;
+        Parsed parsed = new Parsed(decimal ? 1 : scale, decimal ? exponent : 0, dimension);
+        ATOMS.put(symbol, new Atom(parsed, prefixable, BINARY_UNITS.contains(symbol)));
+    }
+
+    private static void binary(String... symbols) {
+        BINARY_UNITS.addAll(Arrays.asList(symbols));
+    }
+
+    // 10的 exponent 次方；指数的绝对值不超过22时查表，结果是精确的
+    private static double pow10(int exponent) {
+        if (exponent > -POWERS_OF_TEN.length && exponent < POWERS_OF_TEN.length) {
+            return exponent < 0 ? 1 / POWERS_OF_TEN[-exponent] : POWERS_OF_TEN[exponent];
+        }
+        return Math.pow(10, exponent);
+    }
+
+    // 查找单位，先按原样匹配，再尝试拆成前缀和单位
+    private static Parsed resolve(String symbol) {
+        Atom atom = ATOMS.get(symbol);
+        if (atom != null) {
+            return atom.unit;
+        }
+        if (TEMPERATURES.containsKey(symbol)) {
+            throw new IllegalArgumentException(symbol + " 有零点偏移，只能与其它温度单位单独换算，复合单位中请使用 K");
+        }
+        for (int length = Math.min(2, symbol.length() - 1); length >= 1; length--) {
+            String prefix = symbol.substring(0, length);
+            Atom unit = ATOMS.get(symbol.substring(length));
+            if (unit == null || !unit.prefixable) {
+                continue;
+            }
+            Integer exponent = SI_PREFIXES.get(prefix);
+            if (exponent != null) {
+                return new Parsed(unit.unit.scale, unit.unit.exponent + exponent, unit.unit.dimension);
+            }
+            Double scale = unit.binary ? BINARY_PREFIXES.get(prefix) : null;
+            if (scale != null) {
+                return new Parsed(scale * unit.unit.scale, unit.unit.exponent, unit.unit.dimension);
+            }
+        }
+        throw new IllegalArgumentException("无法识别的单位: " + symbol);
+    }
+
+
+    /**
+     * 编译好的换算，可以被多个线程共用。
+     */
+    public static class Conversion {
+        private final double factor;
+        private final String dimension;
+        // 有零点偏移的温度换算使用温度表，其它换算只需要乘以系数
+        private final Units.Unit fromTemperature;
+        private final Units.Unit toTemperature;
+
+        private Conversion(Parsed from, Parsed to) {
+            if (!Arrays.equals(from.dimension, to.dimension)) {
+                throw new IllegalArgumentException("量纲不同，无法换算: " + format(from.dimension) + " 和 " + format(to.dimension));
+            }
+            int exponent;
+            try {
+                exponent = Math.subtractExact(from.exponent, to.exponent);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("换算系数超出范围: " + format(from.dimension));
+            }
+            // 除以精确的10的幂，比乘以不精确的 1e-3 等误差更小
+            this.factor = exponent >= 0 ? from.scale / to.scale * pow10(exponent)
+                    : from.scale / to.scale / pow10(-exponent);
+            if (!Double.isFinite(this.factor) || this.factor == 0) {
+                throw new IllegalArgumentException("换算系数超出范围: " + format(from.dimension));
+            }
+            this.dimension = format(from.dimension);
+            this.fromTemperature = null;
+            this.toTemperature = null;
+        }
+
+        private Conversion(Units.Unit from, Units.Unit to) {
+            this.factor = Double.NaN;
+            this.dimension = DIMENSIONS[TEMP];
+            this.fromTemperature = from;
+            this.toTemperature = to;
+        }
+
+        /**
+         * 换算一个值。
+         */
+        public double apply(double value) {
+            if (fromTemperature == null) {
+                return value * factor;
+            }
+            return toTemperature.fromBase(fromTemperature.toBase(value));
+        }
+
+        /**
+         * @return 换算系数；有零点偏移的温度换算没有固定的系数，返回 NaN
+         */
+        public double getFactor() {
+            return factor;
+        }
+
+        /**
+         * @return 量纲，例如 m·s^-1
+         */
+        public String getDimension() {
+            return dimension;
+        }
+    }
+
+
+    /**
+     * 解析结果：值 v 换算为基本单位的值为 v * scale * 10^exponent。不可变，单位表中的实例可以直接共用。
+     */
+    static class Parsed {
+        private final double scale;
+        private final int exponent;
+        private final int[] dimension;
+
+        Parsed(double scale, int exponent, int[] dimension) {
+            this.scale = scale;
+            this.exponent = exponent;
+            this.dimension = dimension;
+        }
+
+        // 指数的运算检查溢出，括号嵌套的乘方可能超出 int 的范围
+        private Parsed multiply(Parsed other, int sign) {
+            try {
+                int[] result = dimension.clone();
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = sign > 0 ? Math.addExact(result[i], other.dimension[i])
+                            : Math.subtractExact(result[i], other.dimension[i]);
+                }
+                return new Parsed(sign > 0 ? scale * other.scale : scale / other.scale,
+                        sign > 0 ? Math.addExact(exponent, other.exponent)
+                                : Math.subtractExact(exponent, other.exponent), result);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("单位的指数超出范围");
+            }
+        }
+
+        private Parsed power(int power) {
+            try {
+                int[] result = dimension.clone();
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = Math.multiplyExact(result[i], power);
+                }
+                return new Parsed(Math.pow(scale, power), Math.multiplyExact(exponent, power), result);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("单位的指数超出范围");
+            }
+        }
+    }
+
+
+    private static class Atom {
+        private final Parsed unit;
+        private final boolean prefixable;
+        private final boolean binary;
+
+        Atom(Parsed unit, boolean prefixable, boolean binary) {
+            this.unit = unit;
+            this.prefixable = prefixable;
+            this.binary = binary;
+        }
+    }
+
+
+    /**
+     * 递归下降解析器。
+     */
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        // expression := factor (('*' | '·' | ' ' | '/') factor)*
+        Parsed expression() {
+            Parsed result = factor();
+            while (true) {
+                skipSpaces();
+                if (pos >= text.length() || text.charAt(pos) == ')') {
+                    return result;
+                }
+                char c = text.charAt(pos);
+                int sign = 1;
+                if (c == '*' || c == '·') {
+                    pos++;
+                } else if (c == '/') {
+                    sign = -1;
+                    pos++;
+                } else if (pos == 0 || text.charAt(pos - 1) != ' ') {
+                    throw error("无法识别的字符 '" + c + "'");
+                }
+                result = result.multiply(factor(), sign);
+            }
+        }
+
+        // factor := (unit | '(' expression ')') ('^' ['-' | '+'] digits | digits)? | number ('^' ['-' | '+'] digits)?
+        Parsed factor() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("缺少单位");
+            }
+            Parsed base;
+            char c = text.charAt(pos);
+            if (c == '(') {
+                pos++;
+                base = expression();
+                if (pos >= text.length() || text.charAt(pos) != ')') {
+                    throw error("括号不匹配");
+                }
+                pos++;
+            } else if (Character.isDigit(c)) {
+                int start = pos;
+                while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                    pos++;
+                }
+                try {
+                    base = new Parsed(Double.parseDouble(text.substring(start, pos)), 0, new int[DIMENSIONS.length]);
+                } catch (NumberFormatException e) {
+                    throw error("数字不正确");
+                }
+            } else if (Character.isLetter(c) || c == '°') {
+                int start = pos;
+                while (pos < text.length() && (Character.isLetter(text.charAt(pos)) || text.charAt(pos) == '°')) {
+                    pos++;
+                }
+                base = resolve(text.substring(start, pos));
+            } else {
+                throw error("无法识别的字符 '" + c + "'");
+            }
+
+            if (pos < text.length() && text.charAt(pos) == '^') {
+                pos++;
+                int start = pos;
+                if (pos < text.length() && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+                    pos++;
+                }
+                return base.power(exponent(start));
+            }
+            // 数字后面的数字已经在上面读完，这里只会是单位或括号后面的指数
+            if (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                return base.power(exponent(pos));
+            }
+            return base;
+        }
+
+        private int exponent(int start) {
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            int power;
+            try {
+                power = Integer.parseInt(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("指数不正确");
+            }
+            if (power > MAX_POWER || power < -MAX_POWER) {
+                throw error("指数的绝对值不能超过 " + MAX_POWER);
+            }
+            return power;
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && text.charAt(pos) == ' ') {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("无法解析单位表达式 \"" + text + "\"，位置 " + pos + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package stu.team.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单位换算表。每个物理量有一个基准单位，其它单位记录换算到基准单位的系数：
+ * 基准值 = (值 - zero) * factor / divisor，反向换算为 基准值 * divisor / factor + zero，
+ * 普通单位的 zero 为0，温度等仿射换算的单位用 zero 表示零点偏移。
+ * 系数按"先乘后除"拆成两个数，和原来逐个单位手写的公式（例如 value / 1000、celsius * 9/5 + 32）计算结果完全相同。
+ * 增加新的单位或物理量只需要在下面的表中增加一行。
+ * @author crc
+ */
+public class Units {
+
+    // 物理量名称（不区分大小写）到物理量
+    private static final Map<String, Quantity> QUANTITIES = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        define("temperature", "温度",
+                unit("Celsius", 1, 1, 0, "C"),
+                unit("Fahrenheit", 5, 9, 32, "F"),
+                unit("Kelvin", 1, 1, 273.15, "K"),
+                unit("Rankine", 5, 9, 491.67, "Ra", "R"),
+                unit("Reaumur", 5, 4, 0, "Re"));
+        define("length", "长度",
+                unit("Meters", 1, 1, 0, "m"),
+                unit("Kilometers", 1000, 1, 0, "km"),
+                unit("Centimeters", 1, 100, 0, "cm"),
+                unit("Millimeters", 1, 1000, 0, "mm"),
+                unit("Micrometers", 1, 1_000_000, 0, "um"),
+                unit("Nanometers", 1, 1_000_000_000, 0, "nm"),
+                unit("Inches", 0.0254, 1, 0, "inches", "in"),
+                unit("Feet", 0.3048, 1, 0, "feet", "ft"),
+                unit("Yards", 0.9144, 1, 0, "yards", "yd"),
+                unit("Miles", 1609.344, 1, 0, "miles", "mi"),
+                unit("NauticalMiles", 1852, 1, 0, "nmi"));
+        define("mass", "质量",
+                unit("Kilograms", 1, 1, 0, "kg"),
+                unit("Grams", 1, 1000, 0, "g"),
+                unit("Milligrams", 1, 1_000_000, 0, "mg"),
+                unit("Micrograms", 1, 1_000_000_000, 0, "ug"),
+                unit("Tonnes", 1000, 1, 0, "t"),
+                unit("Pounds", 0.45359237, 1, 0, "lb"),
+                unit("Ounces", 0.028349523125, 1, 0, "oz"));
+        define("speed", "速度",
+                unit("MetersPerSecond", 1, 1, 0, "mps"),
+                unit("KilometersPerHour", 1, 3.6, 0, "kmph", "kmh"),
+                unit("FeetPerSecond", 0.3048, 1, 0, "ftps", "fps"),
+                unit("MilesPerHour", 0.44704, 1, 0, "mph"),
+                unit("Knots", 1852, 3600, 0, "knots", "kn"));
+        define("area", "面积",
+                unit("SquareMeters", 1, 1, 0, "m2"),
+                unit("SquareKilometers", 1_000_000, 1, 0, "km2"),
+                unit("SquareCentimeters", 1, 10_000, 0, "cm2"),
+                unit("SquareMillimeters", 1, 1_000_000, 0, "mm2"),
+                unit("Hectares", 10_000, 1, 0, "ha"),
+                unit("Acres", 4046.8564224, 1, 0, "acres", "ac"),
+                unit("SquareInches", 0.00064516, 1, 0, "sqin", "in2"),
+                unit("SquareFeet", 0.09290304, 1, 0, "sqft", "ft2"),
+                unit("SquareYards", 0.83612736, 1, 0, "sqyd", "yd2"),
+                unit("SquareMiles", 2589988.110336, 1, 0, "sqmi", "mi2"));
+        define("volume", "体积",
+                unit("CubicMeters", 1, 1, 0, "m3"),
+                unit("Liters", 1, 1000, 0, "l"),
+                unit("Milliliters", 1, 1_000_000, 0, "ml"),
+                unit("CubicCentimeters", 1, 1_000_000, 0, "cm3", "cc"),
+                unit("CubicInches", 0.000016387064, 1, 0, "in3"),
+                unit("CubicFeet", 0.028316846592, 1, 0, "ft3"),
+                unit("USGallons", 0.003785411784, 1, 0, "gal"),
+                unit("USQuarts", 0.000946352946, 1, 0, "qt"),
+                unit("USPints", 0.000473176473, 1, 0, "pt"),
+                unit("USFluidOunces", 0.0000295735295625, 1, 0, "floz"),
+                unit("ImperialGallons", 0.00454609, 1, 0, "impgal"));
+        define("data", "数据大小",
+                unit("Bytes", 1, 1, 0, "B"),
+                unit("Bits", 1, 8, 0, "bit"),
+                unit("Kilobytes", 1000, 1, 0, "KB"),
+                unit("Megabytes", 1_000_000, 1, 0, "MB"),
+                unit("Gigabytes", 1_000_000_000, 1, 0, "GB"),
+                unit("Terabytes", 1_000_000_000_000L, 1, 0, "TB"),
+                unit("Kibibytes", 1024, 1, 0, "KiB"),
+                unit("Mebibytes", 1048576, 1, 0, "MiB"),
+                unit("Gibibytes", 1073741824, 1, 0, "GiB"),
+                unit("Tebibytes", 1099511627776L, 1, 0, "TiB"),
+                unit("Kilobits", 1000, 8, 0, "kbit"),
+                unit("Megabits", 1_000_000, 8, 0, "Mbit"),
+                unit("Gigabits", 1_000_000_000, 8, 0, "Gbit"));
+        define("pressure", "压强",
+                unit("Pascals", 1, 1, 0, "Pa"),
+                unit("Hectopascals", 100, 1, 0, "hPa"),
+                unit("Kilopascals", 1000, 1, 0, "kPa"),
+                unit("Megapascals", 1_000_000, 1, 0, "MPa"),
+                unit("Bars", 100_000, 1, 0, "bar"),
+                unit("Millibars", 100, 1, 0, "mbar"),
+                unit("Atmospheres", 101325, 1, 0, "atm"),
+                unit("Torr", 101325, 760, 0, "Torr"),
+                unit("MillimetersOfMercury", 133.322387415, 1, 0, "mmHg"),
+                unit("InchesOfMercury", 3386.389, 1, 0, "inHg"),
+                unit("PoundsPerSquareInch", 6894.757293168361, 1, 0, "psi"));
+    }
+
+    /**
+     * 查找物理量。
+     * @param name 物理量名称，不区分大小写
+     * @throws IllegalArgumentException 不支持的物理量
+     */
+    public static Quantity quantity(String name) {
+        Quantity quantity = name == null ? null : QUANTITIES.get(name);
+        if (quantity == null) {
+            throw new IllegalArgumentException("不支持的物理量: " + name + "，可选 " + String.join("、", QUANTITIES.keySet()));
+        }
+        return quantity;
+    }
+
+    /**
+     * @return 所有物理量及其单位：物理量名称 -> (单位名称 -> 单位符号)
+     */
+    public static Map<String, Map<String, List<String>>> list() {
+        Map<String, Map<String, List<String>>> result = new LinkedHashMap<>();
+        for (Quantity quantity : QUANTITIES.values()) {
+            Map<String, List<String>> units = new LinkedHashMap<>();
+            for (Unit unit : quantity.units) {
+                units.put(unit.name, unit.symbols);
+            }
+            result.put(quantity.name, units);
+        }
+        return result;
+    }
+
+    private static void define(String name, String label, Unit... units) {
+        QUANTITIES.put(name, new Quantity(name, label, units));
+    }
+
+    private static Unit unit(String name, double factor, double divisor, double zero, String... symbols) {
+        return new Unit(name, factor, divisor, zero, symbols);
+    }
+
+
+    /**
+     * 物理量：一组可以互相换算的单位。
+     */
+    public static class Quantity {
+        private final String name;
+        private final String label;
+        private final Unit[] units;
+        // 单位符号和名称（不区分大小写）到单位
+        private final Map<String, Unit> lookup = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        private Quantity(String name, String label, Unit[] units) {
+            this.name = name;
+            this.label = label;
+            this.units = units;
+            for (Unit unit : units) {
+                lookup.put(unit.name, unit);
+                for (String symbol : unit.symbols) {
+                    lookup.put(symbol, unit);
+                }
+            }
+        }
+
+        /**
+         * 查找单位。
+         * @param symbol 单位符号或名称，不区分大小写
+         * @throws IllegalArgumentException 无效的单位
+         */
+        public Unit unit(String symbol) {
+            Unit unit = symbol == null ? null : lookup.get(symbol);
+            if (unit == null) {
+                throw new IllegalArgumentException("无效的" + label + "单位: " + symbol);
+            }
+            return unit;
+        }
+
+        /**
+         * 查找多个单位。
+         * @param symbols 单位符号或名称，为空时返回所有单位
+         * @throws IllegalArgumentException 无效的单位
+         */
+        public Unit[] units(String[] symbols) {
+            if (symbols == null || symbols.length == 0) {
+                return units.clone();
+            }
+            Unit[] result = new Unit[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                result[i] = unit(symbols[i].trim());
+            }
+            return result;
+        }
+
+        /**
+         * 把一个值换算成所有单位，以JSON对象写入 out，不创建中间的 Map 和装箱对象。
+         * @param value 要换算的值
+         * @param from 当前单位
+         * @param quoted 是否把数值写成字符串（兼容原来各个换算接口的返回格式）
+         * @param out 输出
+         */
+        public void writeJson(double value, Unit from, boolean quoted, StringBuilder out) {
+            double base = from.toBase(value);
+            out.append('{');
+            for (int i = 0; i < units.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(units[i].jsonKey);
+                double converted = units[i].fromBase(base);
+                if (quoted) {
+                    out.append('"').append(converted).append('"');
+                } else if (Double.isFinite(converted)) {
+                    out.append(converted);
+                } else {
+                    out.append("null");
+                }
+            }
+            out.append('}');
+        }
+
+        /**
+         * 把一个值换算成所有单位。
+         * @param value 要换算的值
+         * @param from 当前单位的符号或名称
+         * @return 单位名称 -> 换算结果，按表中的顺序
+         */
+        public Map<String, Double> convertAll(double value, String from) {
+            double base = unit(from).toBase(value);
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (Unit unit : units) {
+                result.put(unit.name, unit.fromBase(base));
+            }
+            return result;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 单位的数量，用于估算输出的长度
+         */
+        public int size() {
+            return units.length;
+        }
+    }
+
+
+    /**
+     * 单位及其换算系数。
+     */
+    public static class Unit {
+        private final String name;
+        private final double factor;
+        private final double divisor;
+        private final double zero;
+        private final List<String> symbols;
+        // 预先生成的JSON键，例如 "Meters":
+        private final String jsonKey;
+
+        private Unit(String name, double factor, double divisor, double zero, String[] symbols) {
+            this.name = name;
+            this.factor = factor;
+            this.divisor = divisor;
+            this.zero = zero;
+            List<String> list = new ArrayList<>(symbols.length);
+            Collections.addAll(list, symbols);
+            this.symbols = Collections.unmodifiableList(list);
+            this.jsonKey = "\"" + name + "\":";
+        }
+
+        /**
+         * 换算成基准单位。
+         */
+        public double toBase(double value) {
+            return (zero == 0 ? value : value - zero) * factor / divisor;
+        }
+
+        /**
+         * 从基准单位换算成本单位。
+         */
+        public double fromBase(double base) {
+            double value = base * divisor / factor;
+            return zero == 0 ? value : value + zero;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package stu.team.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 计算密集型任务共用的线程池，线程数等于CPU核数，避免各个功能各自创建线程。
+ * @author crc
+ */
+public class Workers {
+
+    public static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    public static final ExecutorService CPU = Executors.newFixedThreadPool(PARALLELISM, daemonThreads("worker"));
+
+    /**
+     * 创建守护线程的线程工厂，线程名带有前缀和序号。
+     * @param prefix 线程名前缀
+     */
+    public static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
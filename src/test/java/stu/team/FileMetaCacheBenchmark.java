@@ -0,0 +1,92 @@
+package stu.team;
+
+import stu.team.constant.constant;
+import stu.team.util.FileMetaCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 比较图片元数据的两种获取方式的单次调用延迟（p50 / p99 / p99.9）：
+ * 原来每次请求的 exists + isReadable + probeContentType，和 FileMetaCache 的缓存命中。
+ * 不是单元测试，不会在 mvn test 中运行，编译后手动执行：
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(依赖的 classpath) stu.team.FileMetaCacheBenchmark [调用次数]
+ * </pre>
+ * 测试文件写在 constant.ImageUrl 下（FileMetaCache 只缓存被监听目录中的文件），结束后删除。
+ * @author crc
+ */
+public class FileMetaCacheBenchmark {
+
+    private static final int FILES = 64;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        Path dir = Paths.get(constant.ImageUrl).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        Path[] files = new Path[FILES];
+        for (int i = 0; i < FILES; i++) {
+            files[i] = dir.resolve(".bench-" + i + ".jpg");
+            Files.write(files[i], new byte[1024 + i]);
+        }
+        try {
+            // 预热两种方式，并让缓存装满
+            measure("uncached", files, iterations / 4, false);
+            measure("cached", files, iterations / 4, true);
+            measure("uncached", files, iterations, false).print();
+            measure("cached", files, iterations, true).print();
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static Result measure(String name, Path[] files, int iterations, boolean cached) throws IOException {
+        long[] nanos = new long[iterations];
+        long sink = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < iterations; i++) {
+            Path file = files[random.nextInt(files.length)];
+            long start = System.nanoTime();
+            if (cached) {
+                sink += FileMetaCache.get(file).getSize();
+            } else {
+                // 与原来 viewImage 的每次请求相同
+                if (Files.exists(file) && Files.isReadable(file)) {
+                    sink += Files.probeContentType(file).length();
+                }
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        return new Result(name, nanos);
+    }
+
+
+    private static class Result {
+        private final String name;
+        private final long[] nanos;
+
+        Result(String name, long[] nanos) {
+            this.name = name;
+            this.nanos = nanos;
+            Arrays.sort(nanos);
+        }
+
+        long percentile(double p) {
+            return nanos[Math.min(nanos.length - 1, (int) (nanos.length * p))];
+        }
+
+        void print() {
+            System.out.printf("%-9s n=%d  p50=%dns  p99=%dns  p99.9=%dns  max=%dns%n", name, nanos.length,
+                    percentile(0.50), percentile(0.99), percentile(0.999), nanos[nanos.length - 1]);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package stu.team;
+
+import org.lionsoul.ip2region.xdb.Searcher;
+import stu.team.constant.constant;
+import stu.team.util.IpRegionUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 比较 ip2region 几种查询方式在 1 到 N 个线程下的吞吐量（次/秒）：
+ * file-only（每次查询读文件，每个线程一个 Searcher）、vector（向量索引在内存，每个线程一个 Searcher）、
+ * buffer（整个数据库在内存，所有线程共用一个 Searcher），
+ * 以及 IpRegionUtil 的查询（按 constant.IpRegionMode 加载，只有 vector 模式带缓存）。
+ * 每种方式各跑两种负载：random 从大量随机地址中查询，几乎不会命中缓存；
+ * hot 大部分查询落在一小组热点地址上，接近真实流量中少数客户端反复访问的情况。
+ * 不是单元测试，不会在 mvn test 中运行，编译后手动执行：
+ * <pre>
+ * java -cp target/classes:target/test-classes:$(依赖的 classpath) stu.team.IpRegionBenchmark [最大线程数] [每轮秒数] [xdb文件]
+ * </pre>
+ * 没有指定 xdb 文件时使用 constant.IpRegionDbPath，不存在时使用程序自带的数据库。
+ * @author crc
+ */
+public class IpRegionBenchmark {
+
+    // 查询的地址池，大于缓存容量，缓存命中率与真实流量中热点地址的比例有关
+    private static final int ADDRESSES = 1 << 18;
+
+    // hot 负载中热点地址的个数，以及落在热点地址上的查询比例
+    private static final int HOT_ADDRESSES = 1024;
+    private static final double HOT_RATIO = 0.9;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        long millis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 2) * 1000);
+        Path db = args.length > 2 ? Paths.get(args[2]) : Paths.get(constant.IpRegionDbPath);
+        boolean temporary = false;
+        if (!Files.isRegularFile(db)) {
+            try (InputStream in = IpRegionUtil.class.getResourceAsStream("/ip2region/ip2region.xdb")) {
+                if (in == null) {
+                    throw new IOException("找不到 ip2region 数据库");
+                }
+                db = Files.createTempFile("ip2region-bench", ".xdb");
+                Files.copy(in, db, StandardCopyOption.REPLACE_EXISTING);
+                temporary = true;
+            }
+        }
+
+        try {
+            String file = db.toString();
+            byte[] vectorIndex = Searcher.loadVectorIndexFromFile(file);
+            Searcher buffer = Searcher.newWithBuffer(Searcher.loadContentFromFile(file));
+            Random random = new Random(42);
+            long[] randomAddresses = new long[ADDRESSES];
+            for (int i = 0; i < randomAddresses.length; i++) {
+                randomAddresses[i] = random.nextInt() & 0xFFFFFFFFL;
+            }
+            long[] hot = new long[HOT_ADDRESSES];
+            for (int i = 0; i < hot.length; i++) {
+                hot[i] = random.nextInt() & 0xFFFFFFFFL;
+            }
+            long[] hotAddresses = new long[ADDRESSES];
+            for (int i = 0; i < hotAddresses.length; i++) {
+                hotAddresses[i] = random.nextDouble() < HOT_RATIO ? hot[random.nextInt(hot.length)]
+                        : random.nextInt() & 0xFFFFFFFFL;
+            }
+
+            System.out.printf("%-8s %-8s %8s %14s%n", "mode", "workload", "threads", "lookups/s");
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                workload("random", threads, millis, randomAddresses, file, vectorIndex, buffer);
+                workload("hot", threads, millis, hotAddresses, file, vectorIndex, buffer);
+            }
+        } finally {
+            if (temporary) {
+                Files.deleteIfExists(db);
+            }
+        }
+    }
+
+    // 用同一组地址依次测量各种查询方式
+    private static void workload(String workload, int threads, long millis, long[] addresses, String file,
+                                 byte[] vectorIndex, Searcher buffer) throws Exception {
+        run("file", workload, threads, millis, addresses, () -> {
+            Searcher searcher = Searcher.newWithFileOnly(file);
+            return new Lookup() {
+                public String search(long ip) throws IOException {
+                    return searcher.search(ip);
+                }
+
+                public void close() throws IOException {
+                    searcher.close();
+                }
+            };
+        });
+        run("vector", workload, threads, millis, addresses, () -> {
+            Searcher searcher = Searcher.newWithVectorIndex(file, vectorIndex);
+            return new Lookup() {
+                public String search(long ip) throws IOException {
+                    return searcher.search(ip);
+                }
+
+                public void close() throws IOException {
+                    searcher.close();
+                }
+            };
+        });
+        run("buffer", workload, threads, millis, addresses, () -> buffer::search);
+        run("util", workload, threads, millis, addresses, () -> IpRegionUtil::queryRegion);
+    }
+
+    // 每个线程用自己的 Lookup 循环查询 millis 毫秒，先预热同样的时间
+    private static void run(String mode, String workload, int threads, long millis, long[] addresses,
+                            LookupFactory factory) throws Exception {
+        measure(threads, millis, addresses, factory);
+        long count = measure(threads, millis, addresses, factory);
+        System.out.printf("%-8s %-8s %8d %14.0f%n", mode, workload, threads, count * 1000.0 / millis);
+    }
+
+    private static long measure(int threads, long millis, long[] addresses, LookupFactory factory)
+            throws Exception {
+        LongAdder total = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Exception> errors = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    Lookup lookup = factory.create();
+                    try {
+                        ready.countDown();
+                        start.await();
+                        long count = 0;
+                        int i = seed * 7919;
+                        while (running.get()) {
+                            lookup.search(addresses[i++ & (addresses.length - 1)]);
+                            count++;
+                        }
+                        total.add(count);
+                    } finally {
+                        lookup.close();
+                    }
+                } catch (Exception e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                    ready.countDown();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        ready.await();
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (!errors.isEmpty()) {
+            throw errors.get(0);
+        }
+        return total.sum();
+    }
+
+
+    private interface Lookup {
+        String search(long ip) throws IOException;
+
+        default void close() throws IOException {
+        }
+    }
+
+    private interface LookupFactory {
+        Lookup create() throws IOException;
+    }
+}
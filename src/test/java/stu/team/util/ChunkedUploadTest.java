@@ -0,0 +1,98 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ChunkedUpload 的分片重传：重传中途失败的分片回到未收到状态，提交不会得到新旧混合的文件。
+ * 文件写在 constant.BaseUrl 下，结束后删除。
+ * @author crc
+ */
+public class ChunkedUploadTest {
+
+    private static final int CHUNK = 64 * 1024;
+
+    private ChunkedUpload.Session session;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        if (session != null) {
+            ChunkedUpload.abort(session.getUploadId());
+            Files.deleteIfExists(session.getTarget());
+        }
+    }
+
+    @Test
+    public void failedReuploadMarksChunkMissing() throws IOException {
+        byte[] content = random(2 * CHUNK + 100, 1);
+        session = ChunkedUpload.init("chunked-test-" + UUID.randomUUID() + ".bin", content.length, CHUNK);
+        String id = session.getUploadId();
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            ChunkedUpload.writeChunk(id, i, new ByteArrayInputStream(chunk(content, i)));
+        }
+        assertEquals(Collections.emptyList(), session.missingChunks());
+
+        // 重传分片 1，写入一部分不同的数据后连接断开
+        byte[] other = random(CHUNK, 2);
+        assertThrows(IOException.class, () -> ChunkedUpload.writeChunk(id, 1, failingAfter(other, 1000)));
+        assertEquals(Collections.singletonList(1), session.missingChunks());
+        assertThrows(IllegalStateException.class, () -> ChunkedUpload.commit(id));
+
+        // 数据不完整的重传同样不算收到
+        assertThrows(IllegalArgumentException.class,
+                () -> ChunkedUpload.writeChunk(id, 1, new ByteArrayInputStream(other, 0, 1000)));
+        assertEquals(Collections.singletonList(1), session.missingChunks());
+
+        ChunkedUpload.writeChunk(id, 1, new ByteArrayInputStream(chunk(content, 1)));
+        Path committed = ChunkedUpload.commit(id);
+        assertArrayEquals(content, Files.readAllBytes(committed));
+    }
+
+    private static byte[] chunk(byte[] content, int index) {
+        return Arrays.copyOfRange(content, index * CHUNK, Math.min(content.length, (index + 1) * CHUNK));
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    // 读出前 limit 个字节后抛出异常，模拟中途断开的连接
+    private static InputStream failingAfter(byte[] data, int limit) {
+        return new InputStream() {
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (pos >= limit) {
+                    throw new IOException("连接已断开");
+                }
+                int n = Math.min(length, limit - pos);
+                System.arraycopy(data, pos, buffer, offset, n);
+                pos += n;
+                return n;
+            }
+        };
+    }
+}
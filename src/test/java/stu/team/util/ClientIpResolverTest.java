@@ -0,0 +1,136 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ClientIpResolver 的地址解析、可信地址段匹配和转发链遍历。
+ * 可信地址段使用 constant.TrustedProxies 的默认值：
+ * 127.0.0.0/8、::1/128、10.0.0.0/8、172.16.0.0/12、192.168.0.0/16。
+ * @author crc
+ */
+public class ClientIpResolverTest {
+
+    @Test
+    public void parsesIpv4() {
+        assertEquals(0L, parseV4("0.0.0.0"));
+        assertEquals(0xC0A80101L, parseV4("192.168.1.1"));
+        assertEquals(0xFFFFFFFFL, parseV4("255.255.255.255"));
+        assertEquals(-1L, parseV4("256.0.0.1"));
+        assertEquals(-1L, parseV4("1.2.3"));
+        assertEquals(-1L, parseV4("1.2.3.4.5"));
+        assertEquals(-1L, parseV4("1..3.4"));
+        assertEquals(-1L, parseV4(""));
+    }
+
+    @Test
+    public void parsesIpv6() {
+        assertV6("2001:db8::1", 0x20010DB800000000L, 1L);
+        assertV6("::1", 0L, 1L);
+        assertV6("::", 0L, 0L);
+        assertV6("1::", 0x0001000000000000L, 0L);
+        assertV6("1:2:3:4:5:6:7:8", 0x0001000200030004L, 0x0005000600070008L);
+        assertV6("fe80::1:2", 0xFE80000000000000L, 0x0000000000010002L);
+        assertV6("1:2:3:4:5:6:7::", 0x0001000200030004L, 0x0005000600070000L);
+        String[] invalid = {"1::2::3", "1:2:3:4:5:6:7:8:9", "12345::", "1:2", ":1:2:3:4:5:6:7", "1:", "g::"};
+        for (String s : invalid) {
+            assertV6(s, -1L, -1L);
+        }
+    }
+
+    @Test
+    public void matchesCidrBoundaries() {
+        assertTrusted("10.0.0.0", true);
+        assertTrusted("10.255.255.255", true);
+        assertTrusted("9.255.255.255", false);
+        assertTrusted("11.0.0.0", false);
+
+        // 172.16.0.0/12 覆盖 172.16.0.0 - 172.31.255.255
+        assertTrusted("172.16.0.0", true);
+        assertTrusted("172.31.255.255", true);
+        assertTrusted("172.15.255.255", false);
+        assertTrusted("172.32.0.0", false);
+
+        assertTrusted("192.168.0.0", true);
+        assertTrusted("192.168.255.255", true);
+        assertTrusted("192.169.0.0", false);
+        assertTrusted("127.0.0.1", true);
+        assertTrusted("8.8.8.8", false);
+
+        // ::1/128 只匹配一个地址
+        assertTrusted("::1", true);
+        assertTrusted("0:0:0:0:0:0:0:1", true);
+        assertTrusted("::2", false);
+        assertTrusted("::", false);
+        assertTrusted("2001:db8::1", false);
+
+        assertTrusted("not-an-ip", false);
+        assertTrusted("", false);
+    }
+
+    @Test
+    public void matchesWithinLargerString() {
+        String header = "for=10.1.2.3;proto=http";
+        assertTrue(ClientIpResolver.isTrusted(header, 4, 12));
+        assertFalse(ClientIpResolver.isTrusted(header, 4, 13));
+    }
+
+    @Test
+    public void ignoresHeadersFromUntrustedPeers() {
+        assertEquals("8.8.8.8", ClientIpResolver.resolve("8.8.8.8", null, "1.1.1.1"));
+        assertEquals("8.8.8.8", ClientIpResolver.resolve("8.8.8.8", "for=1.1.1.1", null));
+        assertEquals("10.0.0.1", ClientIpResolver.resolve("10.0.0.1", null, null));
+        assertEquals("10.0.0.1", ClientIpResolver.resolve("10.0.0.1", "", ""));
+    }
+
+    @Test
+    public void walksXForwardedForFromTheRight() {
+        assertEquals("203.0.113.7", ClientIpResolver.resolve("10.0.0.1", null, "203.0.113.7"));
+        assertEquals("203.0.113.7", ClientIpResolver.resolve("10.0.0.1", null, "203.0.113.7, 10.1.2.3"));
+        // 客户端自己写入的地址在不可信地址左边，不会被采用
+        assertEquals("203.0.113.7",
+                ClientIpResolver.resolve("10.0.0.1", null, "1.1.1.1, 203.0.113.7, 192.168.1.1, 172.20.0.5"));
+        // 全部是可信代理时取最左边的一个
+        assertEquals("10.0.0.3", ClientIpResolver.resolve("10.0.0.1", null, "10.0.0.3,10.0.0.2"));
+        // 端口、空白
+        assertEquals("203.0.113.7", ClientIpResolver.resolve("10.0.0.1", null, "  203.0.113.7:8080 ,10.0.0.2"));
+        // 无法解析的值之前的内容不可信，返回最后一个可信代理
+        assertEquals("10.0.0.2", ClientIpResolver.resolve("10.0.0.1", null, "203.0.113.7, unknown, 10.0.0.2"));
+        assertEquals("10.0.0.1", ClientIpResolver.resolve("10.0.0.1", null, "unknown"));
+        assertEquals("2001:db8::7", ClientIpResolver.resolve("::1", null, "2001:db8::7, ::1"));
+    }
+
+    @Test
+    public void walksForwardedFromTheRight() {
+        assertEquals("192.0.2.60",
+                ClientIpResolver.resolve("127.0.0.1", "for=192.0.2.60;proto=http;by=203.0.113.43", null));
+        assertEquals("192.0.2.60",
+                ClientIpResolver.resolve("127.0.0.1", "for=192.0.2.60, for=\"[::1]:4711\"", null));
+        assertEquals("2001:db8:cafe::17",
+                ClientIpResolver.resolve("127.0.0.1", "For=\"[2001:db8:cafe::17]:4711\"", null));
+        assertEquals("198.51.100.17",
+                ClientIpResolver.resolve("127.0.0.1", "proto=https;for=198.51.100.17, for=10.0.0.9", null));
+        // Forwarded 优先于 X-Forwarded-For
+        assertEquals("192.0.2.60", ClientIpResolver.resolve("127.0.0.1", "for=192.0.2.60", "198.51.100.1"));
+        // 没有 for= 的条目
+        assertEquals("127.0.0.1", ClientIpResolver.resolve("127.0.0.1", "proto=http", null));
+        // 未闭合的方括号
+        assertEquals("127.0.0.1", ClientIpResolver.resolve("127.0.0.1", "for=\"[2001:db8::1\"", null));
+    }
+
+    private static long parseV4(String s) {
+        return ClientIpResolver.parseV4(s, 0, s.length());
+    }
+
+    private static void assertV6(String s, long high, long low) {
+        assertEquals(high, ClientIpResolver.parseV6(s, 0, s.length(), true), s + " 高64位");
+        assertEquals(low, ClientIpResolver.parseV6(s, 0, s.length(), false), s + " 低64位");
+    }
+
+    private static void assertTrusted(String address, boolean trusted) {
+        assertEquals(trusted, ClientIpResolver.isTrusted(address, 0, address.length()), address);
+    }
+}
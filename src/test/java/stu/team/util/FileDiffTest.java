@@ -0,0 +1,221 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FileDiff 的输出格式，以及把差异应用到原文件后能否得到对比的文件。
+ * @author crc
+ */
+public class FileDiffTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void identicalFilesProduceNothing() throws IOException {
+        Diff diff = diff("a\nb\nc\n", "a\nb\nc\n", 3);
+        assertEquals(0, diff.hunks);
+        assertEquals("", diff.text);
+        assertEquals(0, diff("", "", 3).hunks);
+    }
+
+    @Test
+    public void trimsCommonPrefixAndSuffix() throws IOException {
+        String original = lines(1, 20);
+        String compared = original.replace("line 10\n", "changed 10\n");
+        Diff diff = diff(original, compared, 3);
+        assertEquals(1, diff.hunks);
+        assertEquals("--- original\n+++ compared\n"
+                + "@@ -7,7 +7,7 @@\n"
+                + " line 7\n line 8\n line 9\n-line 10\n+changed 10\n line 11\n line 12\n line 13\n", diff.text);
+    }
+
+    @Test
+    public void changesAtTheEdges() throws IOException {
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +1,2 @@\n-a\n+x\n b\n",
+                diff("a\nb\nc\nd\n", "x\nb\nc\nd\n", 1).text);
+        assertEquals("--- original\n+++ compared\n@@ -3,2 +3,2 @@\n c\n-d\n+x\n",
+                diff("a\nb\nc\nd\n", "a\nb\nc\nx\n", 1).text);
+        assertEquals("--- original\n+++ compared\n@@ -0,0 +1,2 @@\n+a\n+b\n", diff("", "a\nb\n", 3).text);
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +0,0 @@\n-a\n-b\n", diff("a\nb\n", "", 3).text);
+        // 在重复的行中间插入，去掉开头和结尾后剩下的部分为空
+        assertRoundTrip("a\na\na\n", "a\na\na\na\n", 0);
+    }
+
+    @Test
+    public void separatesHunksByContext() throws IOException {
+        String original = lines(1, 30);
+        String near = original.replace("line 10\n", "x\n").replace("line 16\n", "y\n");
+        String edge = original.replace("line 10\n", "x\n").replace("line 17\n", "y\n");
+        String far = original.replace("line 10\n", "x\n").replace("line 18\n", "y\n");
+        // 两处修改之间相同的行不超过两倍上下文时合并为一个差异块
+        assertEquals(1, diff(original, near, 3).hunks);
+        assertEquals(1, diff(original, edge, 3).hunks);
+        assertEquals(2, diff(original, far, 3).hunks);
+        assertEquals(2, diff(original, near, 2).hunks);
+        assertRoundTrip(original, far, 0);
+    }
+
+    @Test
+    public void reportsMissingNewlineAtEndOfFile() throws IOException {
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +1,2 @@\n a\n-b\n\\ No newline at end of file\n"
+                + "+c\n\\ No newline at end of file\n", diff("a\nb", "a\nc", 3).text);
+        // 只差最后的换行符也是差异
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +1,2 @@\n a\n-b\n+b\n\\ No newline at end of file\n",
+                diff("a\nb\n", "a\nb", 3).text);
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +1,2 @@\n a\n-b\n\\ No newline at end of file\n+b\n",
+                diff("a\nb", "a\nb\n", 3).text);
+        // 没有换行符的最后一行作为上下文
+        assertEquals("--- original\n+++ compared\n@@ -1,2 +1,2 @@\n-a\n+x\n b\n\\ No newline at end of file\n",
+                diff("a\nb", "x\nb", 3).text);
+        assertRoundTrip("x\ny\nz", "x\nz", 1);
+    }
+
+    @Test
+    public void fallsBackWhenTheEditDistanceIsLarge() throws IOException {
+        // 行从很小的词表中选取，大部分行在两个文件中都出现，编辑距离远超 MAX_COST
+        Random random = new Random(7);
+        StringBuilder original = new StringBuilder();
+        StringBuilder compared = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            String line = "w" + random.nextInt(20) + "\n";
+            int r = random.nextInt(10);
+            if (r != 0) {
+                original.append(line);
+            }
+            if (r != 1) {
+                compared.append(r < 4 ? "w" + random.nextInt(20) + "\n" : line);
+            }
+        }
+        Diff diff = assertRoundTrip(original.toString(), compared.toString(), 3);
+        assertTrue(diff.hunks > 1);
+    }
+
+    @Test
+    public void randomEditsRoundTrip() throws IOException {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            List<String> lines = new ArrayList<>();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                lines.add("l" + random.nextInt(8));
+            }
+            List<String> edited = new ArrayList<>(lines);
+            for (int e = random.nextInt(6); e > 0; e--) {
+                int at = edited.isEmpty() ? 0 : random.nextInt(edited.size());
+                switch (random.nextInt(3)) {
+                    case 0:
+                        edited.add(at, "n" + random.nextInt(8));
+                        break;
+                    case 1:
+                        if (!edited.isEmpty()) {
+                            edited.remove(at);
+                        }
+                        break;
+                    default:
+                        if (!edited.isEmpty()) {
+                            edited.set(at, "l" + random.nextInt(8));
+                        }
+                }
+            }
+            String original = String.join("\n", lines) + (random.nextBoolean() && !lines.isEmpty() ? "\n" : "");
+            String compared = String.join("\n", edited) + (random.nextBoolean() && !edited.isEmpty() ? "\n" : "");
+            assertRoundTrip(original, compared, random.nextInt(4));
+        }
+    }
+
+    @Test
+    public void rejectsNegativeContext() {
+        assertThrows(IllegalArgumentException.class, () -> diff("a\n", "b\n", -1));
+    }
+
+    private Diff assertRoundTrip(String original, String compared, int context) throws IOException {
+        Diff diff = diff(original, compared, context);
+        assertEquals(compared, apply(original, diff.text), diff.text);
+        return diff;
+    }
+
+    private Diff diff(String original, String compared, int context) throws IOException {
+        Path a = Files.write(dir.resolve("original"), original.getBytes(StandardCharsets.UTF_8));
+        Path b = Files.write(dir.resolve("compared"), compared.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int hunks = FileDiff.diff(a, b, "original", "compared", context, out);
+        return new Diff(hunks, out.toString(StandardCharsets.UTF_8));
+    }
+
+    // 把统一格式的差异应用到原文件，检查上下文和删除的行与原文件一致
+    private static String apply(String original, String patch) {
+        List<String> source = new ArrayList<>();
+        for (int start = 0; start < original.length(); ) {
+            int end = original.indexOf('\n', start);
+            end = end < 0 ? original.length() : end + 1;
+            source.add(original.substring(start, end));
+            start = end;
+        }
+        StringBuilder result = new StringBuilder();
+        int position = 0;
+        boolean header = true;
+        String[] lines = patch.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (line.startsWith("@@ ")) {
+                String range = line.substring(4, line.indexOf(' ', 4));
+                int start = Integer.parseInt(range.substring(0, range.indexOf(',')));
+                int count = Integer.parseInt(range.substring(range.indexOf(',') + 1));
+                int target = count == 0 ? start : start - 1;
+                while (position < target) {
+                    result.append(source.get(position++));
+                }
+                header = false;
+            } else if (header) {
+                continue;
+            } else if (line.startsWith(" ") || line.startsWith("-")) {
+                String expected = source.get(position++);
+                boolean noNewline = i + 1 < lines.length && lines[i + 1].startsWith("\\");
+                assertEquals(expected, line.substring(1) + (noNewline ? "" : "\n"), "第 " + position + " 行");
+                if (line.startsWith(" ")) {
+                    result.append(expected);
+                }
+            } else if (line.startsWith("+")) {
+                boolean noNewline = i + 1 < lines.length && lines[i + 1].startsWith("\\");
+                result.append(line.substring(1)).append(noNewline ? "" : "\n");
+            }
+        }
+        while (position < source.size()) {
+            result.append(source.get(position++));
+        }
+        return result.toString();
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+
+    private static class Diff {
+        private final int hunks;
+        private final String text;
+
+        Diff(int hunks, String text) {
+            this.hunks = hunks;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Passwords 的字符类型覆盖和分布。随机结果用较宽的容差检查，正常实现误报的概率可以忽略。
+ * @author crc
+ */
+public class PasswordsTest {
+
+    private static final String[] CLASSES = {
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZ",
+            "abcdefghijklmnopqrstuvwxyz",
+            "0123456789",
+            "!@#$%^&*()_+-=[]{}|;':\",.<>/?"};
+
+    @Test
+    public void everyPasswordContainsEverySelectedClassAndNothingElse() {
+        for (int mask = 1; mask < 16; mask++) {
+            Passwords.CharacterSet characters = characterSet(mask);
+            int classes = Integer.bitCount(mask);
+            for (int length : new int[]{classes, classes + 1, 16}) {
+                for (int i = 0; i < 500; i++) {
+                    String password = Passwords.generate(length, characters);
+                    assertEquals(length, password.length());
+                    assertEquals(mask, classesOf(password), "mask " + mask + ": " + password);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void classesAreSpreadEvenlyOverPositions() {
+        // 长度等于类型数时每种类型恰好出现一次，每个位置上各类型的次数应当接近
+        Passwords.CharacterSet characters = Passwords.characterSet(true, true, true, true);
+        int samples = 20000;
+        int[][] counts = new int[4][4];
+        for (int i = 0; i < samples; i++) {
+            String password = Passwords.generate(4, characters);
+            for (int position = 0; position < 4; position++) {
+                counts[position][classIndex(password.charAt(position))]++;
+            }
+        }
+        for (int position = 0; position < 4; position++) {
+            for (int c = 0; c < 4; c++) {
+                assertNear(samples / 4.0, counts[position][c], "位置 " + position + " 类型 " + c);
+            }
+        }
+    }
+
+    @Test
+    public void charactersAreUniform() {
+        Passwords.CharacterSet characters = Passwords.characterSet(true, true, true, true);
+        Map<Character, Integer> counts = new HashMap<>();
+        int samples = 20000;
+        int length = 32;
+        for (int i = 0; i < samples; i++) {
+            for (char c : Passwords.generate(length, characters).toCharArray()) {
+                counts.merge(c, 1, Integer::sum);
+            }
+        }
+        assertEquals(characters.size(), counts.size());
+        double expected = (double) samples * length / characters.size();
+        for (Map.Entry<Character, Integer> entry : counts.entrySet()) {
+            assertNear(expected, entry.getValue(), "字符 " + entry.getKey());
+        }
+    }
+
+    @Test
+    public void writesOnePasswordPerLine() throws IOException {
+        Passwords.CharacterSet characters = Passwords.characterSet(false, true, true, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 数量足够多，跨过内部缓冲区的边界
+        Passwords.write(out, 5000, 20, characters);
+        String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n", -1);
+        assertEquals(5001, lines.length);
+        assertEquals("", lines[5000]);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(20, lines[i].length());
+            assertEquals(2 | 4, classesOf(lines[i]), lines[i]);
+        }
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        Passwords.CharacterSet all = Passwords.characterSet(true, true, true, true);
+        assertThrows(IllegalArgumentException.class, () -> Passwords.characterSet(false, false, false, false));
+        assertThrows(IllegalArgumentException.class, () -> Passwords.generate(3, all));
+        assertThrows(IllegalArgumentException.class, () -> Passwords.write(new ByteArrayOutputStream(), 0, 8, all));
+    }
+
+    private static Passwords.CharacterSet characterSet(int mask) {
+        return Passwords.characterSet((mask & 1) != 0, (mask & 2) != 0, (mask & 4) != 0, (mask & 8) != 0);
+    }
+
+    private static int classesOf(String password) {
+        int mask = 0;
+        for (int i = 0; i < password.length(); i++) {
+            mask |= 1 << classIndex(password.charAt(i));
+        }
+        return mask;
+    }
+
+    private static int classIndex(char c) {
+        for (int i = 0; i < CLASSES.length; i++) {
+            if (CLASSES[i].indexOf(c) >= 0) {
+                return i;
+            }
+        }
+        throw new AssertionError("字符集之外的字符: " + c);
+    }
+
+    // 容差为期望值的 15%，对这里的样本量超过 8 个标准差
+    private static void assertNear(double expected, int actual, String message) {
+        assertTrue(Math.abs(actual - expected) < expected * 0.15, message + ": 期望约 " + expected + "，实际 " + actual);
+    }
+}
@@ -0,0 +1,106 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UnitExpression 的前缀、复合单位和量纲检查。
+ * @author crc
+ */
+public class UnitExpressionTest {
+
+    @Test
+    public void binaryPrefixesOnBitsAndBytes() {
+        assertEquals(1024.0, convert(1, "Kibit", "bit"));
+        assertEquals(1024.0, convert(1, "Mibit", "Kibit"));
+        assertEquals(8.0, convert(1, "MiB", "Mibit"));
+        assertEquals(1048576.0, convert(1, "MiB", "B"));
+        assertEquals(1000.0, convert(1, "Mbit", "kbit"));
+        assertEquals(125000.0, convert(1, "Mbit/s", "B/s"));
+        assertEquals(1.048576, convert(1, "Mibit", "Mbit"), 1e-12);
+    }
+
+    @Test
+    public void binaryPrefixesOnlyApplyToInformationUnits() {
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("Kim", "m"));
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("Mis", "s"));
+    }
+
+    @Test
+    public void compoundUnits() {
+        assertEquals(1.0, convert(3.6, "km/h", "m/s"), 1e-12);
+        assertEquals(1e6, convert(1, "km2", "m^2"), 1e-6);
+        assertEquals(1000.0, convert(1, "kN", "kg*m/s^2"), 1e-9);
+        assertEquals(3.6e6, convert(1, "kWh", "J"), 1e-6);
+    }
+
+    @Test
+    public void temperaturesWithOffsets() {
+        assertEquals(212.0, convert(100, "°C", "°F"), 1e-9);
+        assertEquals(273.15, convert(0, "degC", "K"), 1e-9);
+    }
+
+    @Test
+    public void rejectsMismatchedDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("m", "s"));
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("B", "m"));
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("°C*m", "K*m"));
+    }
+
+    @Test
+    public void rejectsHugeExponents() {
+        // 指数超过上限时在解析阶段就拒绝，不会逐次相乘
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+            assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("Ym^99999999", "m^99999999"));
+            assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("m^-2147483648", "m"));
+            assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("m^99999999999", "m"));
+        });
+        assertEquals(1.0, convert(1, "m^32", "m^32"));
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("m^33", "m^33"));
+        // 括号嵌套的乘方溢出 int 时报错，而不是得到错误的量纲
+        assertThrows(IllegalArgumentException.class,
+                () -> UnitExpression.compile("((((((m^32)^32)^32)^32)^32)^32)^32", "m"));
+        // 系数超出 double 的范围
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("(Ym)^32", "(ym)^32"));
+    }
+
+    @Test
+    public void powersOfTenAreExact() {
+        assertEquals(1000.0, convert(1, "µm", "nm"));
+        assertEquals(1e-3, convert(1, "nm", "µm"));
+        assertEquals(1e24, convert(1, "Ym", "m"));
+        // 超过 10^22 的幂不能精确表示
+        assertEquals(1e-24, convert(1, "m", "Ym"), 1e-39);
+        assertEquals(1e48, convert(1, "Ym^2", "m^2"), 1e33);
+    }
+
+    @Test
+    public void numbersWithExponents() {
+        assertEquals(1.0, convert(1, "10^3 m", "km"));
+        assertEquals(1.0, convert(1, "10^-3 m", "mm"), 1e-15);
+        assertEquals(60.0, convert(1, "60 s", "s"));
+        assertThrows(IllegalArgumentException.class, () -> UnitExpression.compile("10^", "1"));
+    }
+
+    @Test
+    public void cachesOnTrimmedExpressions() {
+        UnitExpression.Conversion conversion = UnitExpression.compile("km/h", "m/s");
+        assertSame(conversion, UnitExpression.compile("  km/h ", " m/s"));
+        // 缓存满了以后淘汰旧的换算，数量不超过上限
+        for (int i = 1; i <= 5000; i++) {
+            assertEquals(i, convert(1, i + " m", "m"));
+        }
+        assertTrue(UnitExpression.cachedCount() <= 4096);
+    }
+
+    private static double convert(double value, String from, String to) {
+        return UnitExpression.compile(from, to).apply(value);
+    }
+}
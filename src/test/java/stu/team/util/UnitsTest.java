@@ -0,0 +1,180 @@
+package stu.team.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Units 的换算表。温度和长度的结果与原来 Converter 中手写的公式逐位相同，
+ * 下面的 legacyTemperature / legacyLength 照抄了原来的公式。
+ * @author crc
+ */
+public class UnitsTest {
+
+    private static final String[] TEMPERATURE_UNITS = {"C", "F", "K", "RA", "RE"};
+    private static final String[] LENGTH_UNITS = {"M", "KM", "CM", "MM", "UM", "NM", "INCHES", "FEET", "YARDS", "MILES"};
+
+    @Test
+    public void temperatureIsBitIdenticalToLegacyFormulas() {
+        for (double value : values()) {
+            for (String unit : TEMPERATURE_UNITS) {
+                assertBitIdentical(legacyTemperature(value, unit), Converter.convertTemperature(value, unit), value, unit);
+            }
+        }
+    }
+
+    @Test
+    public void lengthIsBitIdenticalToLegacyFormulas() {
+        for (double value : values()) {
+            for (String unit : LENGTH_UNITS) {
+                assertBitIdentical(legacyLength(value, unit), Converter.convertLength(value, unit), value, unit);
+            }
+        }
+    }
+
+    @Test
+    public void jsonUsesTheSameDigitsAsDoubleToString() {
+        Units.Quantity length = Units.quantity("length");
+        for (double value : values()) {
+            StringBuilder json = new StringBuilder();
+            length.writeJson(value, length.unit("ft"), true, json);
+            StringBuilder expected = new StringBuilder("{");
+            for (Map.Entry<String, Double> entry : length.convertAll(value, "ft").entrySet()) {
+                if (expected.length() > 1) {
+                    expected.append(',');
+                }
+                expected.append('"').append(entry.getKey()).append("\":\"").append(entry.getValue()).append('"');
+            }
+            assertEquals(expected.append('}').toString(), json.toString());
+        }
+    }
+
+    @Test
+    public void exactDefinitionsRoundTrip() {
+        assertEquals(1.0, Converter.convertMass(1, "lb").get("Pounds"));
+        assertEquals(1.0, Converter.convertMass(1, "oz").get("Ounces"));
+        assertEquals(1.0, Converter.convertSpeed(1, "knots").get("Knots"), 1e-15);
+        assertEquals(1.0, Converter.convertSpeed(1, "mph").get("MilesPerHour"));
+        assertEquals(16.0, Converter.convertMass(1, "lb").get("Ounces"), 1e-12);
+        assertEquals(1024.0, Units.quantity("data").convertAll(1, "MiB").get("Kibibytes"));
+        assertEquals(760.0, Units.quantity("pressure").convertAll(1, "atm").get("Torr"), 1e-9);
+    }
+
+    @Test
+    public void unknownUnits() {
+        assertEquals(0, Converter.convertTemperature(1, "X").size());
+        assertThrows(IllegalArgumentException.class, () -> Converter.convertLength(1, "parsec"));
+        assertThrows(IllegalArgumentException.class, () -> Units.quantity("luminosity"));
+    }
+
+    // 各个数量级的随机值，以及 0、-0.0、整数和常见的边界值
+    private static double[] values() {
+        Random random = new Random(42);
+        double[] values = new double[2000];
+        double[] fixed = {0, -0.0, 1, -1, 32, 100, 273.15, -273.15, 491.67, 0.1, 1e-300, 1e300, Double.MIN_VALUE};
+        System.arraycopy(fixed, 0, values, 0, fixed.length);
+        for (int i = fixed.length; i < values.length; i++) {
+            double magnitude = Math.pow(10, random.nextInt(25) - 12);
+            values[i] = (random.nextDouble() * 2 - 1) * magnitude;
+        }
+        return values;
+    }
+
+    private static void assertBitIdentical(Map<String, Double> expected, Map<String, Double> actual,
+                                           double value, String unit) {
+        assertTrue(actual.keySet().containsAll(expected.keySet()), unit);
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            double e = entry.getValue();
+            double a = actual.get(entry.getKey());
+            assertEquals(Double.doubleToRawLongBits(e), Double.doubleToRawLongBits(a),
+                    value + " " + unit + " -> " + entry.getKey() + ": " + e + " != " + a);
+        }
+    }
+
+    private static Map<String, Double> legacyTemperature(double value, String fromUnit) {
+        double celsius;
+        switch (fromUnit) {
+            case "C":
+                celsius = value;
+                break;
+            case "F":
+                celsius = (value - 32) * 5/9;
+                break;
+            case "K":
+                celsius = value - 273.15;
+                break;
+            case "RA":
+                celsius = (value - 491.67) * 5/9;
+                break;
+            case "RE":
+                celsius = value * 5/4;
+                break;
+            default:
+                throw new IllegalArgumentException(fromUnit);
+        }
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("Celsius", celsius);
+        result.put("Fahrenheit", celsius * 9/5 + 32);
+        result.put("Kelvin", celsius + 273.15);
+        result.put("Rankine", celsius * 9/5 + 491.67);
+        result.put("Reaumur", celsius * 4/5);
+        return result;
+    }
+
+    private static Map<String, Double> legacyLength(double value, String fromUnit) {
+        double meters;
+        switch (fromUnit) {
+            case "M":
+                meters = value;
+                break;
+            case "KM":
+                meters = value * 1000;
+                break;
+            case "CM":
+                meters = value / 100;
+                break;
+            case "MM":
+                meters = value / 1000;
+                break;
+            case "UM":
+                meters = value / 1_000_000;
+                break;
+            case "NM":
+                meters = value / 1_000_000_000;
+                break;
+            case "INCHES":
+                meters = value * 0.0254;
+                break;
+            case "FEET":
+                meters = value * 0.3048;
+                break;
+            case "YARDS":
+                meters = value * 0.9144;
+                break;
+            case "MILES":
+                meters = value * 1609.344;
+                break;
+            default:
+                throw new IllegalArgumentException(fromUnit);
+        }
+        // 原来没有海里，新表多出的单位不参与比较
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("Meters", meters);
+        result.put("Kilometers", meters / 1000);
+        result.put("Centimeters", meters * 100);
+        result.put("Millimeters", meters * 1000);
+        result.put("Micrometers", meters * 1_000_000);
+        result.put("Nanometers", meters * 1_000_000_000);
+        result.put("Inches", meters / 0.0254);
+        result.put("Feet", meters / 0.3048);
+        result.put("Yards", meters / 0.9144);
+        result.put("Miles", meters / 1609.344);
+        return result;
+    }
+}